@@ -0,0 +1,90 @@
+import static org.junit.Assert.*;  //provides assertion methods
+import org.junit.Before;  //annotations for setup methods
+import org.junit.Test;  //annotations for test methods
+
+import java.util.Random;
+
+public class CheckCompactSparseVector {
+
+//A large random vector (enough elements for several blocks) and a dense vector to dot with.
+private SparseVector vec;
+private double[] dense;
+
+
+	@Before
+	public void setUp() {
+		Random random = new Random(1);
+		vec = new SparseVector(100000);
+		dense = new double[100000];
+		// Every element gets a random gap, so the blocks need different bit widths
+		int index = 0;
+		while (true) {
+			index += 1 + random.nextInt(index < 50000 ? 4 : 400);
+			if (index >= 100000) {
+				break;
+			}
+			vec.setElement(index, random.nextGaussian());
+		}
+		for (int i = 0; i < dense.length; i++) {
+			dense[i] = random.nextDouble();
+		}
+	}
+	
+	
+	
+	@Test
+	public void testGetElementWithinBound() {
+		//Every encoding decodes every element within its error bound.
+		for (CompactSparseVector.ValueEncoding encoding : CompactSparseVector.ValueEncoding.values()) {
+			CompactSparseVector compact = new CompactSparseVector(vec, encoding);
+			assertEquals(vec.getNonZeroCount(), compact.getNonZeroCount());
+			assertTrue(compact.maxAbsoluteError() <= compact.errorBound());
+			for (int i = 0; i < 100000; i += 7) {
+				assertEquals(vec.getElement(i), compact.getElement(i), compact.errorBound());
+			}
+		}
+	}
+	
+	
+	
+	@Test
+	public void testForEachAndDot() {
+		CompactSparseVector compact = new CompactSparseVector(vec, CompactSparseVector.ValueEncoding.FLOAT32);
+		double[] expected = new double[1];
+		int[] count = new int[1];
+		compact.forEach((index, value) -> {
+			assertEquals(vec.getElement(index), value, compact.errorBound());
+			expected[0] += value * dense[index];
+			count[0]++;
+		});
+		assertEquals(vec.getNonZeroCount(), count[0]);
+		assertEquals(expected[0], compact.dot(dense), 1e-9);
+		assertEquals(compact.dot(vec), compact.dot(compact), 1e-3);
+	}
+	
+	
+	
+	@Test
+	public void testInt8Size() {
+		//8-bit values with packed gaps need less than 4 bytes per element.
+		CompactSparseVector compact = new CompactSparseVector(vec, CompactSparseVector.ValueEncoding.INT8);
+		assertTrue(compact.bytesPerNonZero() < 4.0);
+		//Values that quantize to zero are not stored again when decoding.
+		SparseVector decoded = compact.toSparseVector();
+		assertTrue(decoded.getNonZeroCount() <= vec.getNonZeroCount());
+		for (int i = 0; i < 100000; i += 7) {
+			assertEquals(vec.getElement(i), decoded.getElement(i), compact.errorBound());
+		}
+	}
+	
+	
+	
+	@Test
+	public void testEmpty() {
+		CompactSparseVector compact = new CompactSparseVector(new SparseVector(10), CompactSparseVector.ValueEncoding.BFLOAT16);
+		assertEquals(0.0, compact.getElement(3), 0.0);
+		assertEquals(0.0, compact.dot(new double[10]), 0.0);
+		assertEquals(0.0, compact.bytesPerNonZero(), 0.0);
+	}
+
+}
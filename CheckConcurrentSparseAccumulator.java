@@ -0,0 +1,72 @@
+import static org.junit.Assert.*;  //provides assertion methods
+import org.junit.Before;  //annotations for setup methods
+import org.junit.Test;  //annotations for test methods
+
+public class CheckConcurrentSparseAccumulator {
+
+private ConcurrentSparseAccumulator accumulator;
+
+
+	@Before
+	public void setUp() {
+		accumulator = new ConcurrentSparseAccumulator(10000, 8);
+	}
+	
+	
+	
+	@Test
+	public void testAddToAndSnapshot() {
+		accumulator.addTo(7, 1.5);
+		accumulator.addTo(3, 2.0);
+		accumulator.addTo(7, 1.5);
+		assertEquals(3.0, accumulator.getElement(7), 0.0);
+		SparseVector snapshot = accumulator.snapshot();
+		assertEquals(10000, snapshot.getLength());
+		assertEquals(2, snapshot.getNonZeroCount());
+		assertEquals(2.0, snapshot.getElement(3), 0.0);
+		assertEquals(3.0, snapshot.getElement(7), 0.0);
+	}
+	
+	
+	
+	@Test(expected = UnsupportedOperationException.class)
+	public void testSnapshotIsReadOnly() {
+		accumulator.addTo(3, 2.0);
+		SparseVector snapshot = accumulator.snapshot();
+		assertTrue(snapshot.isReadOnly());
+		snapshot.setElement(3, 1.0);
+	}
+	
+	
+	
+	@Test
+	public void testConcurrentAdd() throws InterruptedException {
+		//8 threads each add 1000 times to their own index and 10 times the same shared vector.
+		SparseVector vector = new SparseVector(10000);
+		for (int i = 0; i < 10000; i += 3) {
+			vector.setElement(i, 1.0);
+		}
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			int offset = t;
+			threads[t] = new Thread(() -> {
+				for (int round = 0; round < 1000; round++) {
+					accumulator.addTo(offset, 1.0);
+				}
+				for (int round = 0; round < 10; round++) {
+					accumulator.add(vector);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		SparseVector snapshot = accumulator.snapshot();
+		assertEquals(1080.0, snapshot.getElement(0), 0.0);
+		assertEquals(1000.0, snapshot.getElement(1), 0.0);
+		assertEquals(80.0, snapshot.getElement(9999), 0.0);
+		assertEquals(3334 + 5, snapshot.getNonZeroCount());
+	}
+
+}
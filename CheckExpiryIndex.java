@@ -0,0 +1,113 @@
+import static org.junit.Assert.*;  //provides assertion methods
+import org.junit.Before;  //annotations for setup methods
+import org.junit.Test;  //annotations for test methods
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CheckExpiryIndex {
+
+	private ExpiryIndex<String> index;
+	private List<String> expired;
+
+	@Before
+	public void setUp() {
+		// Creates an index and a list collecting the payloads of expired entries
+		index = new ExpiryIndex<>();
+		expired = new ArrayList<>();
+	}
+
+
+	@Test
+	public void testDrainInDeadlineOrder() {
+		index.schedule("c", 30);
+		index.schedule("a", 10);
+		index.schedule("b", 20);
+		index.schedule("a2", 10); // same deadline, drained after "a"
+		assertEquals(3, index.drainExpired(20, expired::add));
+		assertEquals(List.of("a", "a2", "b"), expired);
+		assertEquals(1, index.size());
+		assertEquals(30, index.nextDeadline());
+	}
+
+
+	@Test
+	public void testCancel() {
+		ExpiryIndex.Timer<String> timer = index.schedule("a", 10);
+		index.schedule("b", 20);
+		assertTrue(index.cancel(timer));
+		assertFalse(index.cancel(timer)); // already cancelled
+		index.drainExpired(100, expired::add);
+		assertEquals(List.of("b"), expired);
+	}
+
+
+	@Test
+	public void testReschedule() {
+		ExpiryIndex.Timer<String> timer = index.schedule("a", 10);
+		index.schedule("b", 20);
+		index.reschedule(timer, 30);
+		index.drainExpired(25, expired::add);
+		assertEquals(List.of("b"), expired);
+		index.drainExpired(30, expired::add);
+		assertEquals(List.of("b", "a"), expired);
+		assertEquals(Long.MAX_VALUE, index.nextDeadline());
+	}
+
+
+	@Test
+	public void testForeignTimerIsRejected() {
+		ExpiryIndex<String> other = new ExpiryIndex<>();
+		ExpiryIndex.Timer<String> foreign = other.schedule("x", 10);
+		index.schedule("a", 10); // same (deadline, sequence) key as the foreign timer
+		try {
+			index.cancel(foreign);
+			fail("Expected an IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			index.reschedule(foreign, 20);
+			fail("Expected an IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		// Neither index has lost its timer
+		index.drainExpired(10, expired::add);
+		other.drainExpired(10, expired::add);
+		assertEquals(List.of("a", "x"), expired);
+	}
+
+
+	@Test
+	public void testSweeperSurvivesFailingConsumer() throws InterruptedException {
+		AtomicLong now = new AtomicLong();
+		List<String> swept = Collections.synchronizedList(new ArrayList<>());
+		try (ExpiryIndex<String> sweptIndex = new ExpiryIndex<>(now::get)) {
+			sweptIndex.schedule("bad", 1);
+			sweptIndex.schedule("a", 1);
+			sweptIndex.schedule("b", 2);
+			sweptIndex.startSweeper(1, TimeUnit.MILLISECONDS, payload -> {
+				if (payload.equals("bad")) {
+					throw new IllegalStateException("consumer failure (expected by the test)");
+				}
+				swept.add(payload);
+			});
+			now.set(1);
+			// "a" expires in the same sweep as the failing entry, "b" in a later one;
+			// the waits are bounded so that a dead sweeper fails the test instead of hanging it
+			for (int i = 0; i < 5000 && sweptIndex.size() > 1; i++) {
+				Thread.sleep(1);
+			}
+			now.set(2);
+			for (int i = 0; i < 5000 && sweptIndex.size() > 0; i++) {
+				Thread.sleep(1);
+			}
+		}
+		assertEquals(List.of("a", "b"), swept);
+	}
+
+}
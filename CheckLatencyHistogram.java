@@ -0,0 +1,85 @@
+import static org.junit.Assert.*;  //provides assertion methods
+import org.junit.Before;  //annotations for setup methods
+import org.junit.Test;  //annotations for test methods
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class CheckLatencyHistogram {
+
+	private LatencyHistogram histogram;
+
+	@Before
+	public void setUp() {
+		// Creates an empty histogram
+		histogram = new LatencyHistogram();
+	}
+
+
+	@Test
+	public void testEmpty() {
+		assertEquals(0, histogram.getTotalCount());
+		assertEquals(0, histogram.valueAtPercentile(99));
+		assertEquals(0.0, histogram.getMean(), 0.0);
+	}
+
+
+	@Test
+	public void testSmallValuesAreExact() {
+		for (int v = 1; v <= 100; v++) {
+			histogram.record(v);
+		}
+		assertEquals(100, histogram.getTotalCount());
+		assertEquals(50, histogram.valueAtPercentile(50));
+		assertEquals(99, histogram.valueAtPercentile(99));
+		assertEquals(100, histogram.valueAtPercentile(100));
+		assertEquals(50.5, histogram.getMean(), 1e-9);
+	}
+
+
+	@Test
+	public void testLargeValuesWithinRelativeError() {
+		// Log-uniform values up to 2^40, so that every power of two holds some of them
+		Random random = new Random(3);
+		long[] values = new long[10000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = (long) Math.pow(2, 40 * random.nextDouble());
+			histogram.record(values[i]);
+		}
+		Arrays.sort(values);
+		for (double percentile : new double[] {1, 10, 25, 50, 75, 90, 99, 99.9}) {
+			// The exact percentile lies below the largest value, so the result is not capped
+			long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+			long reported = histogram.valueAtPercentile(percentile);
+			assertTrue(exact < histogram.getMax());
+			// The reported value is the top of the exact value's bucket, at most 1/64 above it
+			assertTrue(reported >= exact);
+			assertTrue(reported - exact <= exact / 64);
+		}
+	}
+
+
+	@Test
+	public void testValuesShareBucket() {
+		// 1000000 and 1000100 differ by less than a bucket width (2^13 at this magnitude)
+		histogram.record(1_000_000);
+		histogram.record(1_000_100);
+		histogram.record(5_000_000);
+		assertEquals(histogram.valueAtPercentile(33), histogram.valueAtPercentile(66));
+		assertTrue(histogram.valueAtPercentile(33) >= 1_000_100);
+	}
+
+
+	@Test
+	public void testAddMergesCounts() {
+		LatencyHistogram other = new LatencyHistogram();
+		histogram.record(10);
+		other.record(20);
+		other.record(-5); // recorded as 0
+		histogram.add(other);
+		assertEquals(3, histogram.getTotalCount());
+		assertEquals(20, histogram.getMax());
+		assertEquals(0, histogram.valueAtPercentile(1));
+		assertEquals(10, histogram.valueAtPercentile(50));
+	}
+}
@@ -0,0 +1,110 @@
+import static org.junit.Assert.*;  //provides assertion methods
+import org.junit.Before;  //annotations for setup methods
+import org.junit.Test;  //annotations for test methods
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class CheckLibSvmParser {
+
+//Parser for vectors of length 10 and the labels and vectors it emitted.
+private LibSvmParser parser;
+private List<Double> labels;
+private List<SparseVector> vectors;
+
+
+	@Before
+	public void setUp() {
+		parser = new LibSvmParser(10);
+		labels = new ArrayList<>();
+		vectors = new ArrayList<>();
+	}
+	
+	
+	
+	@Test
+	public void testParse() throws IOException {
+		Path file = write("+1 1:0.5 3:-2 10:1e-3\n"
+				+ "\n"
+				+ "-1 qid:4 2:1.25E2 4:0.1234567890123456789 # comment 5:7\n"
+				+ "0 5:1 2:3"); //unsorted indices, no final line break
+		assertEquals(3, parser.parse(file, (label, vector) -> {
+			labels.add(label);
+			vectors.add(vector);
+		}));
+		assertEquals(List.of(1.0, -1.0, 0.0), labels);
+		assertEquals(0.5, vectors.get(0).getElement(0), 0.0);
+		assertEquals(-2.0, vectors.get(0).getElement(2), 0.0);
+		assertEquals(0.001, vectors.get(0).getElement(9), 0.0);
+		assertEquals(125.0, vectors.get(1).getElement(1), 0.0);
+		assertEquals(0.1234567890123456789, vectors.get(1).getElement(3), 0.0);
+		assertEquals(0.0, vectors.get(1).getElement(4), 0.0); //after the comment
+		assertEquals(2, vectors.get(2).getNonZeroCount());
+		assertEquals(3.0, vectors.get(2).getElement(1), 0.0);
+	}
+	
+	
+	
+	@Test
+	public void testParseParallel() throws IOException {
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			content.append(i).append(' ').append(i % 10 + 1).append(':').append(i).append(".5\n");
+		}
+		Path file = write(content.toString());
+		List<Double> found = Collections.synchronizedList(new ArrayList<>());
+		assertEquals(1000, parser.parseParallel(file, 7, (label, vector) -> {
+			assertEquals(label + 0.5, vector.getElement((int) label % 10), 0.0);
+			found.add(label);
+		}));
+		Collections.sort(found);
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(i, found.get(i), 0.0);
+		}
+	}
+	
+	
+	
+	@Test
+	public void testDuplicateIndex() throws IOException {
+		try {
+			parser.parse(write("1 2:1 2:3\n"), (label, vector) -> { });
+			fail("Expected an IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// Reported at the second "2:3" token, not at the end of the line
+			assertEquals("Duplicate index 2 at offset 6", e.getMessage());
+		}
+	}
+	
+	
+	
+	@Test
+	public void testIndexOutOfRange() throws IOException {
+		try {
+			parser.parse(write("1 3:1\n0 0:2\n"), (label, vector) -> { });
+			fail("Expected an IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertEquals("Index out of range at offset 8", e.getMessage());
+		}
+		try {
+			parser.parse(write("1 11:1\n"), (label, vector) -> { });
+			fail("Expected an IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertEquals("Index out of range at offset 2", e.getMessage());
+		}
+	}
+
+	// Writes the content to a temporary file that is deleted when the JVM exits
+	private Path write(String content) throws IOException {
+		Path file = Files.createTempFile("libsvm", ".txt");
+		file.toFile().deleteOnExit();
+		Files.write(file, content.getBytes(StandardCharsets.US_ASCII));
+		return file;
+	}
+
+}
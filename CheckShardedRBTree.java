@@ -0,0 +1,120 @@
+import static org.junit.Assert.*;  //provides assertion methods
+import org.junit.Before;  //annotations for setup methods
+import org.junit.Test;  //annotations for test methods
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class CheckShardedRBTree {
+
+	private ShardedRBTree<Integer> tree;
+	private List<Integer> batch;
+
+	@Before
+	public void setUp() {
+		// Creates a tree with 4 shards and a shuffled batch of the values 0..999
+		tree = new ShardedRBTree<>(4);
+		batch = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			batch.add(i);
+		}
+		Collections.shuffle(batch);
+	}
+
+
+	@Test
+	public void testInsertAllIsOrdered() {
+		tree.insertAll(batch);
+		assertEquals(1000, tree.size());
+		// Iterating over all shards must yield the values in ascending order
+		int expected = 0;
+		for (Integer value : tree) {
+			assertEquals(expected, value.intValue());
+			expected++;
+		}
+		assertEquals(1000, expected);
+	}
+
+
+	@Test
+	public void testContains() {
+		tree.insertAll(batch);
+		tree.insert(5000);
+		assertTrue(tree.contains(0));
+		assertTrue(tree.contains(999));
+		assertTrue(tree.contains(5000));
+		assertFalse(tree.contains(1000));
+	}
+
+
+	@Test
+	public void testRebalance() {
+		// All data lands in the last shard because the boundaries come from the first batch
+		tree.insertAll(batch);
+		List<Integer> skewed = new ArrayList<>();
+		for (int i = 1000; i < 10000; i++) {
+			skewed.add(i);
+		}
+		tree.insertAll(skewed);
+		tree.rebalance();
+		assertEquals(10000, tree.size());
+		// After rebalancing every shard holds roughly a quarter of the data
+		for (int size : tree.shardSizes()) {
+			assertTrue(size > 2000 && size < 3000);
+		}
+	}
+
+
+	@Test
+	public void testInsertDuringRebalance() throws InterruptedException {
+		tree.insertAll(batch);
+		// A writer adds the values 1000..19999 one by one while the main thread rebalances
+		Thread writer = new Thread(() -> {
+			for (int i = 1000; i < 20000; i++) {
+				tree.insert(i);
+			}
+		});
+		writer.start();
+		while (writer.isAlive()) {
+			tree.rebalance();
+		}
+		writer.join();
+		// No insert may be lost in a retired shard or routed to the wrong one
+		assertEquals(20000, tree.size());
+		int expected = 0;
+		for (Integer value : tree) {
+			assertEquals(expected, value.intValue());
+			expected++;
+		}
+	}
+
+
+	@Test
+	public void testInsertBeforeFirstBatch() {
+		// Single inserts before the first batch land in shard 0, which has no boundaries yet
+		for (int i = 0; i < 100; i++) {
+			tree.insert(batch.get(i));
+		}
+		tree.insertAll(batch.subList(100, 1000));
+		assertEquals(1000, tree.size());
+		// The first batch sets the boundaries for all data, including the earlier inserts
+		for (int size : tree.shardSizes()) {
+			assertTrue(size > 100 && size < 400);
+		}
+		List<Integer> more = new ArrayList<>();
+		for (int i = 1000; i < 1100; i++) {
+			more.add(i);
+		}
+		tree.insertAll(more);
+		assertEquals(1100, tree.size());
+	}
+
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDuplicateInsert() {
+		tree.insertAll(batch);
+		tree.insert(42);
+	}
+
+}
@@ -0,0 +1,96 @@
+import static org.junit.Assert.*;  //provides assertion methods
+import org.junit.Before;  //annotations for setup methods
+import org.junit.Test;  //annotations for test methods
+
+import java.util.Random;
+
+public class CheckSparseDenseKernels {
+
+//A sparse vector with 125 non-zeros (enough for the SIMD path, plus a scalar tail) and a dense array.
+private SparseVector sparse;
+private double[] dense;
+
+
+	@Before
+	public void setUp() {
+		sparse = new SparseVector(1000);
+		dense = new double[1000];
+		for (int i = 0; i < 1000; i++) {
+			dense[i] = i;
+		}
+		for (int i = 1; i < 1000; i += 8) {
+			sparse.setElement(i, 2.0);
+		}
+	}
+	
+	
+	
+	@Test
+	public void testDot() {
+		//2 * (1 + 9 + ... + 993) = 2 * 62125
+		assertEquals(124250.0, SparseDenseKernels.dot(sparse, dense), 1e-9);
+	}
+	
+	
+	
+	@Test
+	public void testAxpy() {
+		SparseDenseKernels.axpy(0.5, sparse, dense);
+		assertEquals(2.0, dense[1], 0.0);
+		assertEquals(2.0, dense[2], 0.0);
+		assertEquals(98.0, dense[97], 0.0);
+	}
+	
+	
+	
+	@Test
+	public void testExtract() {
+		SparseVector extracted = SparseDenseKernels.extract(dense, sparse);
+		assertEquals(125, extracted.getNonZeroCount());
+		assertEquals(9.0, extracted.getElement(9), 0.0);
+		assertEquals(0.0, extracted.getElement(10), 0.0);
+	}
+	
+	
+	
+	@Test
+	public void testSimdMatchesScalar() {
+		// Without the incubator module only the scalar kernels exist
+		if (!SparseDenseKernels.isVectorized()) {
+			return;
+		}
+		Random random = new Random(7);
+		double[] weights = new double[4096];
+		for (int i = 0; i < weights.length; i++) {
+			weights[i] = random.nextDouble() - 0.5;
+		}
+		// Counts from 0 up to a few vectors cover full vectors, tails shorter than one vector
+		// and inputs without a single full vector
+		for (int count = 0; count <= 40; count++) {
+			int[] indices = new int[count];
+			double[] values = new double[count];
+			for (int i = 0; i < count; i++) {
+				indices[i] = i * 97 + random.nextInt(97);
+				values[i] = random.nextDouble() - 0.5;
+			}
+			
+			double scalarDot = SparseDenseKernels.scalarDot(indices, values, weights);
+			double simdDot = SparseDenseKernels.simdDot(indices, values, weights);
+			// The SIMD version adds the products in a different order
+			assertEquals(scalarDot, simdDot, 1e-12);
+			
+			double[] scalarAxpy = weights.clone();
+			double[] simdAxpy = weights.clone();
+			SparseDenseKernels.scalarAxpy(0.25, indices, values, scalarAxpy);
+			SparseDenseKernels.simdAxpy(0.25, indices, values, simdAxpy);
+			assertArrayEquals(scalarAxpy, simdAxpy, 0.0);
+			
+			double[] scalarGather = new double[count];
+			double[] simdGather = new double[count];
+			SparseDenseKernels.scalarGather(weights, indices, scalarGather);
+			SparseDenseKernels.simdGather(weights, indices, simdGather);
+			assertArrayEquals(scalarGather, simdGather, 0.0);
+		}
+	}
+
+}
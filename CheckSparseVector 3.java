@@ -2,6 +2,9 @@ import static org.junit.Assert.*;  //provides assertion methods
 import org.junit.Before;  //annotations for setup methods
 import org.junit.Test;  //annotations for test methods
 
+import java.util.HashSet;
+import java.util.List;
+
 public class CheckSparseVector {
 
 //Declares two private instance variables of type SparseVector named vec and otherVector.
@@ -114,4 +117,135 @@ private SparseVector otherVector;
         assertFalse(vec.equals(nullVector));  //This asserts that vec is not equal to nullVector
 	}
 
+	
+	
+	@Test
+	public void testLengthAfterSetElement() {
+		//Storing elements must not change the length of the vector.
+		assertEquals(5, vec.getLength());
+		assertEquals(5, vec.getNonZeroCount());
+		vec.removeElement(2);
+		assertEquals(4, vec.getNonZeroCount());
+	}
+	
+	
+	
+	@Test
+	public void testAddIntoEmpty() {
+		//Adding into an empty vector copies the elements and leaves the other vector unchanged.
+		SparseVector empty = new SparseVector(5);
+		empty.add(otherVector);
+		assertEquals(3.0, empty.getElement(1), 0.0);
+		assertEquals(3.0, otherVector.getElement(1), 0.0);
+		empty.setElement(1, 7.0);
+		assertEquals(3.0, otherVector.getElement(1), 0.0);
+	}
+	
+	
+	
+	@Test
+	public void testIntersect() {
+		//otherVector has non-zero elements at 1, 3 and 4, which are all non-zero in vec.
+		assertArrayEquals(new int[] {1, 3, 4}, vec.intersect(otherVector));
+		assertArrayEquals(new int[] {1, 3, 4}, otherVector.intersect(vec));
+		assertArrayEquals(new int[0], vec.intersect(new SparseVector(5)));
+	}
+	
+	
+	
+	@Test
+	public void testHadamard() {
+		SparseVector product = vec.hadamard(otherVector);
+		assertEquals(0.0, product.getElement(0), 0.0);
+		assertEquals(6.0, product.getElement(1), 0.0);
+		assertEquals(16.0, product.getElement(3), 0.0);
+		assertEquals(5.0, product.getElement(4), 0.0);
+		assertEquals(3, product.getNonZeroCount());
+	}
+	
+	
+	
+	@Test
+	public void testMaskBy() {
+		SparseVector masked = vec.maskBy(otherVector);
+		assertEquals(0.0, masked.getElement(0), 0.0);
+		assertEquals(2.0, masked.getElement(1), 0.0);
+		assertEquals(0.0, masked.getElement(2), 0.0);
+		assertEquals(4.0, masked.getElement(3), 0.0);
+		assertEquals(5.0, masked.getElement(4), 0.0);
+	}
+	
+	
+	
+	@Test
+	public void testGallopingIntersect() {
+		//A vector with 3 non-zeros against one with 1000 takes the galloping path.
+		SparseVector big = new SparseVector(2000);
+		for (int i = 1999; i >= 0; i -= 2) {
+			big.setElement(i, i);
+		}
+		SparseVector small = new SparseVector(2000);
+		small.setElement(0, 1.0);
+		small.setElement(1001, 2.0);
+		small.setElement(1999, 3.0);
+		assertArrayEquals(new int[] {1001, 1999}, small.intersect(big));
+		assertEquals(2002.0, small.hadamard(big).getElement(1001), 0.0);
+		assertEquals(1999.0, big.maskBy(small).getElement(1999), 0.0);
+	}
+	
+	
+	
+	@Test
+	public void testHashCode() {
+		//A vector with the same elements, set in a different order, has the same hash code.
+		SparseVector equalVector = new SparseVector(5);
+		equalVector.setElement(4, 5.0);
+		equalVector.setElement(2, 3.0);
+		equalVector.setElement(0, 1.0);
+		equalVector.setElement(3, 4.0);
+		equalVector.setElement(1, 9.0);
+		equalVector.setElement(1, 2.0);
+		assertTrue(vec.equals((Object) equalVector));
+		assertEquals(vec.hashCode(), equalVector.hashCode());
+		assertEquals(1, new HashSet<>(List.of(vec, equalVector)).size());
+	}
+	
+	
+	
+	@Test
+	public void testFingerprintIsIncremental() {
+		//Undoing modifications restores the fingerprint.
+		long before = vec.fingerprint();
+		vec.add(otherVector);
+		assertFalse(before == vec.fingerprint());
+		vec.setElement(1, 2.0);
+		vec.setElement(3, 4.0);
+		vec.setElement(4, 5.0);
+		assertEquals(before, vec.fingerprint());
+		vec.removeElement(0);
+		vec.setElement(0, 1.0);
+		assertEquals(before, vec.fingerprint());
+	}
+	
+	
+	
+	@Test
+	public void testAddDropsCancelledElements() {
+		//Adding the negation of elements 0, 3 and 4 removes them, including the head.
+		SparseVector negation = new SparseVector(5);
+		negation.setElement(0, -1.0);
+		negation.setElement(3, -4.0);
+		negation.setElement(4, -5.0);
+		vec.add(negation);
+		assertEquals(2, vec.getNonZeroCount());
+		assertEquals(0.0, vec.getElement(0), 0.0);
+		assertEquals(2.0, vec.getElement(1), 0.0);
+		assertEquals(0.0, vec.getElement(4), 0.0);
+		SparseVector expected = new SparseVector(5);
+		expected.setElement(1, 2.0);
+		expected.setElement(2, 3.0);
+		assertTrue(vec.equals((Object) expected));
+		assertEquals(expected.hashCode(), vec.hashCode());
+	}
+
 }
@@ -0,0 +1,78 @@
+import static org.junit.Assert.*;  //provides assertion methods
+import org.junit.Before;  //annotations for setup methods
+import org.junit.Test;  //annotations for test methods
+
+import java.util.List;
+
+public class CheckSparseVectorStore {
+
+private SparseVectorStore store;
+private SparseVector vec;
+
+
+	@Before
+	public void setUp() {
+		store = new SparseVectorStore();
+		vec = new SparseVector(1000);
+		for (int i = 0; i < 1000; i += 10) {
+			vec.setElement(i, 1.0 + i);
+		}
+	}
+	
+	
+	
+	@Test
+	public void testIntern() {
+		SparseVector copy = vec.maskBy(vec); //an equal vector that is a different instance
+		assertNotSame(vec, copy);
+		assertSame(vec, store.intern(vec));
+		assertSame(vec, store.intern(copy));
+		assertEquals(1, store.size());
+		assertTrue(store.contains(copy));
+		assertFalse(copy.isReadOnly()); //only the shared instance is frozen
+	}
+	
+	
+	
+	@Test(expected = UnsupportedOperationException.class)
+	public void testInternedVectorIsReadOnly() {
+		store.intern(vec);
+		assertTrue(vec.isReadOnly());
+		vec.setElement(5, 2.0);
+	}
+	
+	
+	
+	@Test
+	public void testFindNearDuplicates() {
+		store.intern(vec);
+		//Changing one small element barely moves the SimHash signature.
+		SparseVector nearCopy = vec.maskBy(vec);
+		nearCopy.setElement(0, 1.5);
+		List<SparseVector> found = store.findNearDuplicates(nearCopy, 3);
+		assertEquals(1, found.size());
+		assertSame(vec, found.get(0));
+
+		//A vector with unrelated elements is not reported.
+		SparseVector other = new SparseVector(1000);
+		for (int i = 5; i < 1000; i += 10) {
+			other.setElement(i, 1.0 + i);
+		}
+		assertEquals(0, store.findNearDuplicates(other, 3).size());
+	}
+	
+	
+	
+	@Test
+	public void testMinHash() {
+		SparseVector half = new SparseVector(1000);
+		for (int i = 0; i < 500; i += 10) {
+			half.setElement(i, 1.0);
+		}
+		//The index set of half covers 50 of the 100 indices of vec.
+		double jaccard = SparseVectorSignatures.estimateJaccard(
+				SparseVectorSignatures.minHash(vec, 256), SparseVectorSignatures.minHash(half, 256));
+		assertEquals(0.5, jaccard, 0.1);
+	}
+
+}
@@ -0,0 +1,439 @@
+/**
+ * Compact, read-only form of a SparseVector. The indices are delta-encoded and bit-packed,
+ * and the values are stored as float32, bfloat16 or 8-bit integers with a per-vector scale.
+ *
+ * The elements are grouped into blocks of BLOCK_SIZE. Every block stores the absolute index
+ * of its first element, and the gaps between the following indices are packed with the
+ * smallest bit width that fits the largest gap of the block. getElement therefore binary
+ * searches the blocks and decodes at most one block, while iteration and dot products decode
+ * the gaps sequentially without ever materializing the index array.
+ */
+public class CompactSparseVector {
+	// Number of elements per block of delta-encoded indices
+	private static final int BLOCK_SIZE = 64;
+
+	/**
+	 * Storage format of the values. The bound of the absolute error of a single element
+	 * is reported by errorBound(), the error actually measured while encoding by
+	 * maxAbsoluteError().
+	 */
+	public enum ValueEncoding {
+		// 32-bit IEEE float: relative error 2^-24
+		FLOAT32(32),
+		// Upper 16 bits of a float, rounded to nearest even: relative error 2^-8
+		BFLOAT16(16),
+		// Signed byte times a per-vector scale: absolute error scale / 2
+		INT8(8);
+
+		private final int bits;
+
+		ValueEncoding(int bits) {
+			this.bits = bits;
+		}
+
+		// Returns the number of bits used to store one value
+		public int getBits() {
+			return bits;
+		}
+	}
+
+	/**
+	 * Receives the elements of the vector during iteration, in ascending index order.
+	 */
+	public interface ElementConsumer {
+		void accept(int index, double value);
+	}
+
+	private final int length;
+	private final int nonZeros;
+	private final ValueEncoding encoding;
+
+	// Per block: absolute index of the first element, bit offset and bit width of its gaps
+	private final int[] blockStarts;
+	private final long[] blockOffsets;
+	private final byte[] blockWidths;
+	// Bit-packed gaps (index[i] - index[i - 1] - 1) of all blocks
+	private final long[] gapBits;
+
+	// Exactly one of the value arrays is used, depending on the encoding
+	private final float[] floatValues;
+	private final short[] bfloat16Values;
+	private final byte[] int8Values;
+	// Multiplier of the INT8 values
+	private final double scale;
+
+	private final double errorBound;
+	private final double maxAbsoluteError;
+
+	/**
+	 * Encodes the elements of a sparse vector into the compact form.
+	 *
+	 * @param source   The vector to encode.
+	 * @param encoding The storage format of the values.
+	 * @throws IllegalArgumentException If a value is not finite or, for FLOAT32 and BFLOAT16,
+	 *                                  exceeds the range of a float.
+	 */
+	public CompactSparseVector(SparseVector source, ValueEncoding encoding) {
+		int[] indices = source.indexArray();
+		double[] values = source.valueArray();
+		this.length = source.getLength();
+		this.nonZeros = indices.length;
+		this.encoding = encoding;
+
+		// Pack the gaps of every block with the width of its largest gap
+		int blocks = (nonZeros + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		blockStarts = new int[blocks];
+		blockOffsets = new long[blocks];
+		blockWidths = new byte[blocks];
+		long totalBits = 0;
+		for (int b = 0; b < blocks; b++) {
+			int from = b * BLOCK_SIZE;
+			int to = Math.min(from + BLOCK_SIZE, nonZeros);
+			int maxGap = 0;
+			for (int i = from + 1; i < to; i++) {
+				maxGap = Math.max(maxGap, indices[i] - indices[i - 1] - 1);
+			}
+			blockStarts[b] = indices[from];
+			blockOffsets[b] = totalBits;
+			blockWidths[b] = (byte) (32 - Integer.numberOfLeadingZeros(maxGap));
+			totalBits += (long) blockWidths[b] * (to - from - 1);
+		}
+		gapBits = new long[(int) ((totalBits + 63) >>> 6)];
+		for (int b = 0; b < blocks; b++) {
+			int from = b * BLOCK_SIZE;
+			int to = Math.min(from + BLOCK_SIZE, nonZeros);
+			long position = blockOffsets[b];
+			for (int i = from + 1; i < to; i++) {
+				writeBits(position, blockWidths[b], indices[i] - indices[i - 1] - 1);
+				position += blockWidths[b];
+			}
+		}
+
+		// Quantize the values and measure the error actually introduced
+		double maxAbs = 0.0;
+		for (double value : values) {
+			if (!Double.isFinite(value)) {
+				throw new IllegalArgumentException("Value is not finite: " + value);
+			}
+			maxAbs = Math.max(maxAbs, Math.abs(value));
+		}
+		if (encoding != ValueEncoding.INT8 && maxAbs > Float.MAX_VALUE) {
+			throw new IllegalArgumentException("Value exceeds the float range: " + maxAbs);
+		}
+		floatValues = encoding == ValueEncoding.FLOAT32 ? new float[nonZeros] : null;
+		bfloat16Values = encoding == ValueEncoding.BFLOAT16 ? new short[nonZeros] : null;
+		int8Values = encoding == ValueEncoding.INT8 ? new byte[nonZeros] : null;
+		scale = maxAbs / 127.0;
+		double measured = 0.0;
+		for (int i = 0; i < nonZeros; i++) {
+			switch (encoding) {
+				case FLOAT32:
+					floatValues[i] = (float) values[i];
+					break;
+				case BFLOAT16:
+					bfloat16Values[i] = toBfloat16((float) values[i]);
+					break;
+				default:
+					int8Values[i] = scale == 0.0 ? 0 : (byte) Math.round(values[i] / scale);
+					break;
+			}
+			measured = Math.max(measured, Math.abs(values[i] - valueAt(i)));
+		}
+		maxAbsoluteError = measured;
+
+		// A priori bound of the absolute error of one element; the smallest float
+		// subnormal covers the underflow of tiny values to the float formats
+		switch (encoding) {
+			case FLOAT32:
+				errorBound = maxAbs * 0x1p-24 + Float.MIN_VALUE;
+				break;
+			case BFLOAT16:
+				errorBound = maxAbs * (0x1p-8 + 0x1p-24) + Float.MIN_VALUE * 0x1p16;
+				break;
+			default:
+				errorBound = scale / 2;
+				break;
+		}
+	}
+
+	/**
+	 * Returns the value of the element at the specified index, decoded from the compact form.
+	 *
+	 * @param index The index of the element.
+	 * @return The decoded value, or 0.0 if no element is stored at the index.
+	 */
+	public double getElement(int index) {
+		if (index < 0) {
+			throw new IllegalArgumentException("Ungültiger Index");
+		}
+		// Find the last block whose first index is less than or equal to the index
+		int low = 0;
+		int high = blockStarts.length - 1;
+		if (high < 0 || index < blockStarts[0]) {
+			return 0.0;
+		}
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (blockStarts[mid] <= index) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+
+		// Decode the gaps of the block until the index is reached or passed
+		int position = low * BLOCK_SIZE;
+		int end = Math.min(position + BLOCK_SIZE, nonZeros);
+		int current = blockStarts[low];
+		long bit = blockOffsets[low];
+		int width = blockWidths[low];
+		while (current < index && ++position < end) {
+			current += readBits(bit, width) + 1;
+			bit += width;
+		}
+		return current == index && position < end ? valueAt(position) : 0.0;
+	}
+
+	/**
+	 * Passes every stored element to the consumer in ascending index order.
+	 *
+	 * @param consumer The consumer receiving index and decoded value of every element.
+	 */
+	public void forEach(ElementConsumer consumer) {
+		Cursor cursor = new Cursor();
+		while (cursor.next()) {
+			consumer.accept(cursor.index, valueAt(cursor.position));
+		}
+	}
+
+	/**
+	 * Computes the dot product with a dense array, decoding the vector on the fly.
+	 *
+	 * @param dense The dense vector, at least as long as this vector.
+	 * @return The dot product.
+	 */
+	public double dot(double[] dense) {
+		if (dense.length < length) {
+			throw new IllegalArgumentException("Error: Vector lengths are not the same");
+		}
+		double sum = 0.0;
+		Cursor cursor = new Cursor();
+		while (cursor.next()) {
+			sum += valueAt(cursor.position) * dense[cursor.index];
+		}
+		return sum;
+	}
+
+	/**
+	 * Computes the dot product with a sparse vector by merging both index sequences.
+	 *
+	 * @param other The sparse vector of the same length.
+	 * @return The dot product.
+	 */
+	public double dot(SparseVector other) {
+		if (other.getLength() != length) {
+			throw new IllegalArgumentException("Error: Vector lengths are not the same");
+		}
+		int[] otherIndices = other.indexArray();
+		double[] otherValues = other.valueArray();
+		double sum = 0.0;
+		int j = 0;
+		Cursor cursor = new Cursor();
+		while (j < otherIndices.length && cursor.next()) {
+			while (j < otherIndices.length && otherIndices[j] < cursor.index) {
+				j++;
+			}
+			if (j < otherIndices.length && otherIndices[j] == cursor.index) {
+				sum += valueAt(cursor.position) * otherValues[j];
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Computes the dot product with another compact vector by merging both index sequences.
+	 *
+	 * @param other The compact vector of the same length.
+	 * @return The dot product.
+	 */
+	public double dot(CompactSparseVector other) {
+		if (other.length != length) {
+			throw new IllegalArgumentException("Error: Vector lengths are not the same");
+		}
+		double sum = 0.0;
+		Cursor a = new Cursor();
+		Cursor b = other.new Cursor();
+		boolean hasA = a.next();
+		boolean hasB = b.next();
+		while (hasA && hasB) {
+			if (a.index < b.index) {
+				hasA = a.next();
+			} else if (a.index > b.index) {
+				hasB = b.next();
+			} else {
+				sum += valueAt(a.position) * other.valueAt(b.position);
+				hasA = a.next();
+				hasB = b.next();
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Decodes the compact form back into a SparseVector.
+	 *
+	 * @return A new SparseVector holding the decoded elements.
+	 */
+	public SparseVector toSparseVector() {
+		int[] indices = new int[nonZeros];
+		double[] values = new double[nonZeros];
+		Cursor cursor = new Cursor();
+		while (cursor.next()) {
+			indices[cursor.position] = cursor.index;
+			values[cursor.position] = valueAt(cursor.position);
+		}
+		return SparseVector.fromSortedArrays(length, indices, values, nonZeros);
+	}
+
+	// Returns the length of the vector
+	public int getLength() {
+		return length;
+	}
+
+	// Returns the number of stored elements
+	public int getNonZeroCount() {
+		return nonZeros;
+	}
+
+	// Returns the storage format of the values
+	public ValueEncoding getEncoding() {
+		return encoding;
+	}
+
+	/**
+	 * Returns the a priori bound of the absolute error of a single decoded element,
+	 * derived from the largest magnitude of the source values and the encoding.
+	 *
+	 * @return The error bound.
+	 */
+	public double errorBound() {
+		return errorBound;
+	}
+
+	/**
+	 * Returns the largest absolute error of a single element measured while encoding.
+	 * It never exceeds errorBound().
+	 *
+	 * @return The measured error.
+	 */
+	public double maxAbsoluteError() {
+		return maxAbsoluteError;
+	}
+
+	/**
+	 * Returns the number of bytes used per stored element by the index and value arrays,
+	 * including the per-block headers but not the fixed object headers.
+	 *
+	 * @return The average number of bytes per stored element.
+	 */
+	public double bytesPerNonZero() {
+		if (nonZeros == 0) {
+			return 0.0;
+		}
+		long bytes = 8L * gapBits.length + 4L * blockStarts.length + 8L * blockOffsets.length
+				+ blockWidths.length + (long) nonZeros * encoding.getBits() / 8;
+		return (double) bytes / nonZeros;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder("CompactSparseVector{length=" + length
+				+ ",encoding=" + encoding + ",elements=[");
+		forEach((index, value) -> result.append(index).append(":").append(value).append(", "));
+		if (nonZeros > 0) {
+			result.setLength(result.length() - 2);
+		}
+		result.append("]}");
+		return result.toString();
+	}
+
+	// Decodes the value of the element at the given position
+	private double valueAt(int position) {
+		switch (encoding) {
+			case FLOAT32:
+				return floatValues[position];
+			case BFLOAT16:
+				return Float.intBitsToFloat(bfloat16Values[position] << 16);
+			default:
+				return int8Values[position] * scale;
+		}
+	}
+
+	// Rounds a float to the nearest bfloat16, ties to even; values that would round
+	// up to infinity are truncated to the largest finite bfloat16 instead
+	private static short toBfloat16(float value) {
+		int bits = Float.floatToRawIntBits(value);
+		int rounded = (bits + 0x7FFF + ((bits >>> 16) & 1)) >>> 16;
+		if (Float.isInfinite(Float.intBitsToFloat(rounded << 16))) {
+			rounded = bits >>> 16;
+		}
+		return (short) rounded;
+	}
+
+	// Reads width bits (at most 32) starting at the given bit position
+	private int readBits(long position, int width) {
+		if (width == 0) {
+			return 0;
+		}
+		int word = (int) (position >>> 6);
+		int shift = (int) (position & 63);
+		long bits = gapBits[word] >>> shift;
+		if (shift + width > 64) {
+			bits |= gapBits[word + 1] << (64 - shift);
+		}
+		return (int) (bits & ((1L << width) - 1));
+	}
+
+	// Writes the lowest width bits of value starting at the given bit position
+	private void writeBits(long position, int width, int value) {
+		if (width == 0) {
+			return;
+		}
+		int word = (int) (position >>> 6);
+		int shift = (int) (position & 63);
+		long bits = value & ((1L << width) - 1);
+		gapBits[word] |= bits << shift;
+		if (shift + width > 64) {
+			gapBits[word + 1] |= bits >>> (64 - shift);
+		}
+	}
+
+	/**
+	 * Sequential decoder of the index sequence. After a successful next(), index holds the
+	 * index of the current element and position its position in the value array.
+	 */
+	private class Cursor {
+		int position = -1;
+		int index;
+		private long bit;
+		private int width;
+
+		boolean next() {
+			position++;
+			if (position >= nonZeros) {
+				return false;
+			}
+			if (position % BLOCK_SIZE == 0) {
+				// First element of a block: take the absolute index and the block's width
+				int block = position / BLOCK_SIZE;
+				index = blockStarts[block];
+				bit = blockOffsets[block];
+				width = blockWidths[block];
+			} else {
+				index += readBits(bit, width) + 1;
+				bit += width;
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,280 @@
+import java.util.Arrays;
+
+/**
+ * Sparse vector that many threads can add into at the same time, for example to aggregate
+ * gradients. The index space is striped over independently locked segments, each an
+ * open-addressing hash map from index to value on primitive arrays. Threads adding to
+ * indices of different stripes never wait for each other, and a thread holds a stripe's
+ * lock only for a single hash map update, or for all elements of one add(SparseVector) call
+ * that fall into the stripe.
+ *
+ * Every stripe is padded, and its arrays have unused slots at the end, so that the monitor
+ * word written by synchronized and the hash map data of one stripe never share a cache line
+ * with those of another stripe. Otherwise threads working on different stripes would still
+ * invalidate each other's cache lines (false sharing).
+ *
+ * snapshot() copies one stripe at a time, so writers are only blocked for the copy of the
+ * stripe they want to update. The snapshot is therefore consistent per stripe, but additions
+ * that run concurrently with it may be included in some stripes and not in others.
+ */
+public class ConcurrentSparseAccumulator {
+	// Marks an unused slot; valid indices are never negative
+	private static final int EMPTY = -1;
+	// Unused slots at the end of the hash map arrays, 128 bytes each, the size of two cache
+	// lines, so that the adjacent line prefetcher does not pull in the next object either
+	private static final int KEY_PADDING = 32;
+	private static final int VALUE_PADDING = 16;
+
+	private final int length;
+	private final Stripe[] stripes;
+	private final int stripeMask;
+
+	/**
+	 * Constructs an accumulator with four stripes per available processor.
+	 *
+	 * @param length The length of the accumulated vector.
+	 */
+	public ConcurrentSparseAccumulator(int length) {
+		this(length, 4 * Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructs an accumulator with the given number of stripes, rounded up to a power of two.
+	 *
+	 * @param length      The length of the accumulated vector.
+	 * @param stripeCount The number of independently locked segments.
+	 */
+	public ConcurrentSparseAccumulator(int length, int stripeCount) {
+		if (stripeCount < 1) {
+			throw new IllegalArgumentException("Stripe count must be at least 1: " + stripeCount);
+		}
+		this.length = length;
+		int count = stripeCount == 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+		stripes = new Stripe[count];
+		for (int i = 0; i < count; i++) {
+			stripes[i] = new Stripe();
+		}
+		stripeMask = count - 1;
+	}
+
+	/**
+	 * Adds delta to the element at the specified index. Safe to call from many threads.
+	 *
+	 * @param index The index of the element.
+	 * @param delta The value to add.
+	 */
+	public void addTo(int index, double delta) {
+		if (index < 0 || index >= length) {
+			throw new RuntimeException("\nError : Out of Bounds\n");
+		}
+		if (delta == 0.0) {
+			return;
+		}
+		Stripe stripe = stripes[stripeOf(index)];
+		synchronized (stripe) {
+			stripe.add(index, delta);
+		}
+	}
+
+	/**
+	 * Adds all elements of a sparse vector. Safe to call from many threads. The elements are
+	 * grouped by stripe first, so every stripe is locked at most once per call; the elements
+	 * become visible stripe by stripe, not atomically as a whole.
+	 *
+	 * @param other The vector to add, of the same length.
+	 */
+	public void add(SparseVector other) {
+		if (other.getLength() != length) {
+			throw new IllegalArgumentException("Error: Vector lengths are not the same");
+		}
+		int[] indices = other.indexArray();
+		double[] values = other.valueArray();
+
+		// Counting sort of the element positions by stripe: after the prefix sum, the
+		// elements of stripe s are order[starts[s]] .. order[starts[s + 1] - 1]
+		int[] stripeOfElement = new int[indices.length];
+		int[] starts = new int[stripes.length + 1];
+		for (int i = 0; i < indices.length; i++) {
+			stripeOfElement[i] = stripeOf(indices[i]);
+			starts[stripeOfElement[i] + 1]++;
+		}
+		for (int s = 0; s < stripes.length; s++) {
+			starts[s + 1] += starts[s];
+		}
+		int[] order = new int[indices.length];
+		int[] next = Arrays.copyOf(starts, stripes.length);
+		for (int i = 0; i < indices.length; i++) {
+			order[next[stripeOfElement[i]]++] = i;
+		}
+
+		for (int s = 0; s < stripes.length; s++) {
+			if (starts[s] == starts[s + 1]) {
+				continue;
+			}
+			Stripe stripe = stripes[s];
+			synchronized (stripe) {
+				for (int k = starts[s]; k < starts[s + 1]; k++) {
+					stripe.add(indices[order[k]], values[order[k]]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the current value of the element at the specified index.
+	 *
+	 * @param index The index of the element.
+	 * @return The accumulated value, or 0.0 if nothing was added at the index.
+	 */
+	public double getElement(int index) {
+		if (index < 0 || index >= length) {
+			throw new RuntimeException("\nError : Out of Bounds\n");
+		}
+		Stripe stripe = stripes[stripeOf(index)];
+		synchronized (stripe) {
+			return stripe.get(index);
+		}
+	}
+
+	// Returns the length of the accumulated vector
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Copies the accumulated values into a new, read-only SparseVector without stopping the
+	 * writers. Each stripe is copied under its own lock; see the class comment for the
+	 * consistency this provides. Elements that sum up to zero are not stored.
+	 *
+	 * @return A new read-only SparseVector holding the accumulated values.
+	 */
+	public SparseVector snapshot() {
+		int[][] stripeIndices = new int[stripes.length][];
+		double[][] stripeValues = new double[stripes.length][];
+		int total = 0;
+		for (int s = 0; s < stripes.length; s++) {
+			Stripe stripe = stripes[s];
+			synchronized (stripe) {
+				stripeIndices[s] = new int[stripe.size];
+				stripeValues[s] = new double[stripe.size];
+				stripe.copyTo(stripeIndices[s], stripeValues[s]);
+			}
+			total += stripeIndices[s].length;
+		}
+
+		// Sort the elements of all stripes by index: the upper 32 bits of each key hold the
+		// index, the lower ones the position of the element in the concatenated arrays
+		double[] allValues = new double[total];
+		long[] keys = new long[total];
+		int position = 0;
+		for (int s = 0; s < stripes.length; s++) {
+			for (int i = 0; i < stripeIndices[s].length; i++) {
+				keys[position] = ((long) stripeIndices[s][i] << 32) | position;
+				allValues[position] = stripeValues[s][i];
+				position++;
+			}
+		}
+		Arrays.sort(keys);
+		int[] indices = new int[total];
+		double[] values = new double[total];
+		for (int i = 0; i < total; i++) {
+			indices[i] = (int) (keys[i] >>> 32);
+			values[i] = allValues[(int) keys[i]];
+		}
+		return SparseVector.fromSortedArrays(length, indices, values, total).markReadOnly();
+	}
+
+	// Spreads the index bits so that neighboring indices land in different stripes
+	private int stripeOf(int index) {
+		int h = index * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & stripeMask;
+	}
+
+	// Hash map state of a stripe. Superclass fields are laid out before the fields of the
+	// subclass, so the padding of Stripe follows this state and the object header
+	private static class StripeFields {
+		int[] keys;
+		double[] values;
+		// Number of slots in use, and the number of slots minus one
+		int size;
+		int mask;
+	}
+
+	/**
+	 * Open-addressing hash map from index to value with linear probing. Not thread-safe;
+	 * every access is guarded by the monitor of the stripe. The unused long fields place
+	 * the header and state of the next stripe at least 128 bytes further in memory.
+	 */
+	private static final class Stripe extends StripeFields {
+		long p00, p01, p02, p03, p04, p05, p06, p07;
+		long p08, p09, p10, p11, p12, p13, p14, p15;
+
+		Stripe() {
+			allocate(16);
+		}
+
+		void add(int index, double delta) {
+			int slot = find(index);
+			if (keys[slot] == index) {
+				values[slot] += delta;
+				return;
+			}
+			// Grow when more than two thirds of the slots would be used
+			if (3 * (size + 1) > 2 * (mask + 1)) {
+				resize();
+				slot = find(index);
+			}
+			keys[slot] = index;
+			values[slot] = delta;
+			size++;
+		}
+
+		double get(int index) {
+			int slot = find(index);
+			return keys[slot] == index ? values[slot] : 0.0;
+		}
+
+		void copyTo(int[] indices, double[] target) {
+			int i = 0;
+			for (int slot = 0; slot <= mask; slot++) {
+				if (keys[slot] != EMPTY) {
+					indices[i] = keys[slot];
+					target[i] = values[slot];
+					i++;
+				}
+			}
+		}
+
+		private void resize() {
+			int[] oldKeys = keys;
+			double[] oldValues = values;
+			int oldCapacity = mask + 1;
+			allocate(oldCapacity * 2);
+			for (int slot = 0; slot < oldCapacity; slot++) {
+				if (oldKeys[slot] != EMPTY) {
+					int target = find(oldKeys[slot]);
+					keys[target] = oldKeys[slot];
+					values[target] = oldValues[slot];
+				}
+			}
+		}
+
+		// Returns the slot holding the index, or the empty slot where it would be inserted
+		private int find(int index) {
+			int h = index * 0x85EBCA6B;
+			int slot = (h ^ (h >>> 16)) & mask;
+			while (keys[slot] != EMPTY && keys[slot] != index) {
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+
+		// Replaces the arrays by empty ones with the given power-of-two number of slots
+		private void allocate(int capacity) {
+			keys = new int[capacity + KEY_PADDING];
+			Arrays.fill(keys, EMPTY);
+			values = new double[capacity + VALUE_PADDING];
+			mask = capacity - 1;
+		}
+	}
+}
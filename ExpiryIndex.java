@@ -0,0 +1,267 @@
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Index of expiring entries built on a Red-Black Tree ordered by (deadline, sequence).
+ * Scheduling, cancelling and rescheduling an entry take O(log n), and all entries that are due
+ * at a given time can be drained in deadline order without scanning the entries that are not.
+ *
+ * <p>The sequence number makes every key unique, so entries with equal deadlines are kept and
+ * drained in the order in which they were scheduled. All methods are synchronized, so the index
+ * can be drained by the background sweeper while other threads schedule and cancel entries.
+ *
+ * @param <E> The type of the payload attached to each entry.
+ */
+public class ExpiryIndex<E> implements AutoCloseable {
+
+  /**
+   * Handle of a scheduled entry. The handle is the key stored in the tree, so cancelling or
+   * rescheduling an entry needs no extra lookup structure and no new allocation.
+   *
+   * @param <E> The type of the payload.
+   */
+  public static final class Timer<E> implements Comparable<Timer<E>> {
+    // The index that created the timer; only that index may cancel or reschedule it
+    private final ExpiryIndex<E> owner;
+    private final E payload;
+    // Deadline and sequence are only changed while the timer is not in the tree
+    private long deadline;
+    private long sequence;
+    private boolean scheduled;
+
+    /**
+     * Constructs a timer for the specified payload.
+     *
+     * @param owner   The index that schedules the timer.
+     * @param payload The payload handed to the consumer when the timer expires.
+     */
+    private Timer(ExpiryIndex<E> owner, E payload) {
+      this.owner = owner;
+      this.payload = payload;
+    }
+
+    /**
+     * Returns the payload of this timer.
+     *
+     * @return The payload.
+     */
+    public E getPayload() {
+      return payload;
+    }
+
+    /**
+     * Returns the deadline of this timer.
+     *
+     * @return The deadline, in the time unit of the index's clock.
+     */
+    public long getDeadline() {
+      return deadline;
+    }
+
+    /**
+     * Compares timers by deadline first and by scheduling order second.
+     *
+     * @param other The timer to compare with.
+     * @return A negative integer, zero, or a positive integer if this timer expires before,
+     *         together with, or after the specified timer.
+     */
+    @Override
+    public int compareTo(Timer<E> other) {
+      int cmp = Long.compare(deadline, other.deadline);
+      return cmp != 0 ? cmp : Long.compare(sequence, other.sequence);
+    }
+
+    /**
+     * Returns a string representation of the timer.
+     *
+     * @return The deadline and the payload of the timer.
+     */
+    @Override
+    public String toString() {
+      return deadline + ":" + payload;
+    }
+  }
+
+  private final RBTree<Timer<E>> timers = new RBTree<>();
+  private final LongSupplier clock;
+  private long nextSequence = 0;
+  private ScheduledExecutorService sweeper;
+
+  /**
+   * Constructs an empty index whose deadlines are milliseconds of System.currentTimeMillis().
+   */
+  public ExpiryIndex() {
+    this(System::currentTimeMillis);
+  }
+
+  /**
+   * Constructs an empty index using the given clock for the background sweeper.
+   *
+   * @param clock The source of the current time, in the same unit as the deadlines.
+   */
+  public ExpiryIndex(LongSupplier clock) {
+
+    this.clock = clock;
+  }
+
+  /**
+   * Schedules a new entry that expires at the specified deadline.
+   *
+   * @param payload  The payload handed to the consumer when the entry expires.
+   * @param deadline The time at which the entry expires.
+   * @return The handle used to cancel or reschedule the entry.
+   */
+  public synchronized Timer<E> schedule(E payload, long deadline) {
+    Timer<E> timer = new Timer<>(this, payload);
+    insert(timer, deadline);
+    return timer;
+  }
+
+  /**
+   * Cancels a scheduled entry.
+   *
+   * @param timer The handle returned by schedule.
+   * @return true if the entry was scheduled and is now cancelled, false if it had already
+   *         expired or been cancelled.
+   * @throws IllegalArgumentException If the timer was created by another index.
+   */
+  public synchronized boolean cancel(Timer<E> timer) {
+    checkOwner(timer);
+    if (!timer.scheduled) {
+      return false;
+    }
+    timers.delete(timer);
+    timer.scheduled = false;
+    return true;
+  }
+
+  /**
+   * Moves an entry to a new deadline. An entry that has already expired or been cancelled
+   * is scheduled again. The entry is ordered after all entries already scheduled for the
+   * same deadline.
+   *
+   * @param timer    The handle returned by schedule.
+   * @param deadline The new time at which the entry expires.
+   * @throws IllegalArgumentException If the timer was created by another index.
+   */
+  public synchronized void reschedule(Timer<E> timer, long deadline) {
+    checkOwner(timer);
+    if (timer.scheduled) {
+      timers.delete(timer);
+    }
+    insert(timer, deadline);
+  }
+
+  /**
+   * Removes all entries whose deadline is less than or equal to now, in deadline order,
+   * and hands their payloads to the consumer. No objects are allocated per drained entry.
+   * The consumer runs while the index is locked; it may schedule new entries.
+   *
+   * @param now      The current time.
+   * @param consumer The consumer receiving the payloads of the expired entries.
+   * @return The number of drained entries.
+   */
+  public synchronized int drainExpired(long now, Consumer<? super E> consumer) {
+    int drained = 0;
+    Timer<E> first = timers.first();
+    while (first != null && first.deadline <= now) {
+      timers.pollFirst();
+      first.scheduled = false;
+      consumer.accept(first.payload);
+      drained++;
+      first = timers.first();
+    }
+    return drained;
+  }
+
+  /**
+   * Returns the earliest deadline of all scheduled entries.
+   *
+   * @return The earliest deadline, or Long.MAX_VALUE if no entry is scheduled.
+   */
+  public synchronized long nextDeadline() {
+    Timer<E> first = timers.first();
+    return first == null ? Long.MAX_VALUE : first.deadline;
+  }
+
+  /**
+   * Returns the number of scheduled entries.
+   *
+   * @return The number of entries that have neither expired nor been cancelled.
+   */
+  public synchronized int size() {
+    return timers.size();
+  }
+
+  /**
+   * Starts a background sweeper on a single-threaded scheduled executor that drains the
+   * expired entries at a fixed period, using the clock of this index. An exception thrown by
+   * the consumer is passed to the sweeper thread's uncaught exception handler, which prints it
+   * by default, and the sweep continues with the next entry.
+   *
+   * @param period   The period between two sweeps.
+   * @param unit     The time unit of the period.
+   * @param consumer The consumer receiving the payloads of the expired entries.
+   * @throws IllegalStateException If the sweeper is already running.
+   */
+  public synchronized void startSweeper(long period, TimeUnit unit, Consumer<? super E> consumer) {
+    if (sweeper != null) {
+      throw new IllegalStateException("Sweeper is already running");
+    }
+    sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "expiry-sweeper");
+      thread.setDaemon(true);
+      return thread;
+    });
+    // A task of scheduleAtFixedRate that throws is never run again, so nothing may escape it
+    Consumer<E> guarded = payload -> {
+      try {
+        consumer.accept(payload);
+      } catch (RuntimeException e) {
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+      }
+    };
+    sweeper.scheduleAtFixedRate(() -> drainExpired(clock.getAsLong(), guarded), period, period, unit);
+  }
+
+  /**
+   * Stops the background sweeper, if one is running. Scheduled entries are kept.
+   */
+  @Override
+  public synchronized void close() {
+    if (sweeper != null) {
+      sweeper.shutdownNow();
+      sweeper = null;
+    }
+  }
+
+  /**
+   * Rejects handles of other indexes. Their (deadline, sequence) keys may equal the key of a
+   * timer of this index, since every index numbers its timers from 0.
+   *
+   * @param timer The handle passed to cancel or reschedule.
+   * @throws IllegalArgumentException If the timer was created by another index.
+   */
+  private void checkOwner(Timer<E> timer) {
+    if (timer.owner != this) {
+      throw new IllegalArgumentException("Timer belongs to another index: " + timer);
+    }
+  }
+
+  /**
+   * Assigns a deadline and a fresh sequence number to a timer and inserts it into the tree.
+   *
+   * @param timer    The timer, must not be in the tree.
+   * @param deadline The time at which the timer expires.
+   */
+  private void insert(Timer<E> timer, long deadline) {
+    timer.deadline = deadline;
+    timer.sequence = nextSequence++;
+    timers.insert(timer);
+    timer.scheduled = true;
+  }
+}
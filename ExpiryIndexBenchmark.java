@@ -0,0 +1,224 @@
+import java.util.Random;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the ExpiryIndex with a java.util.concurrent.DelayQueue and a hashed timing wheel.
+ * Each structure is filled with 10^6 live timers with random deadlines, a number of timers is
+ * cancelled, and then the simulated clock is advanced in ticks while the due timers are drained.
+ * All structures use the same simulated millisecond clock, so the timings only contain the cost
+ * of the data structures.
+ *
+ * <p>Usage: java ExpiryIndexBenchmark [timers] [cancellations] [horizonMillis]
+ */
+public class ExpiryIndexBenchmark {
+
+  // Simulated clock shared by all structures, in milliseconds
+  private static long now = 0;
+
+  public static void main(String[] args) {
+    int timerCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    // DelayQueue.remove(Object) is a linear scan, so the number of cancellations is kept small
+    int cancelCount = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+    int horizon = args.length > 2 ? Integer.parseInt(args[2]) : 60_000;
+
+    long[] deadlines = new long[timerCount];
+    Random random = new Random(42);
+    for (int i = 0; i < timerCount; i++) {
+      deadlines[i] = 1 + random.nextInt(horizon);
+    }
+    int[] cancelled = new int[cancelCount];
+    for (int i = 0; i < cancelCount; i++) {
+      cancelled[i] = random.nextInt(timerCount);
+    }
+
+    System.out.printf("%d timers, %d cancellations, horizon %d ms%n", timerCount, cancelCount, horizon);
+    System.out.printf("%-14s %14s %14s %14s%n", "structure", "schedule ns/op", "cancel ns/op", "drain ns/op");
+    // The first round warms up the JIT, the second one is reported
+    for (int round = 0; round < 2; round++) {
+      boolean report = round == 1;
+      runExpiryIndex(deadlines, cancelled, horizon, report);
+      runDelayQueue(deadlines, cancelled, horizon, report);
+      runTimingWheel(deadlines, cancelled, horizon, report);
+    }
+  }
+
+  private static void runExpiryIndex(long[] deadlines, int[] cancelled, int horizon, boolean report) {
+    now = 0;
+    ExpiryIndex<Integer> index = new ExpiryIndex<>(() -> now);
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    ExpiryIndex.Timer<Integer>[] handles = new ExpiryIndex.Timer[deadlines.length];
+
+    long start = System.nanoTime();
+    for (int i = 0; i < deadlines.length; i++) {
+      handles[i] = index.schedule(i, deadlines[i]);
+    }
+    long scheduled = System.nanoTime();
+    for (int i : cancelled) {
+      index.cancel(handles[i]);
+    }
+    long cancelledAt = System.nanoTime();
+    long[] fired = new long[1];
+    for (now = 1; now <= horizon; now++) {
+      index.drainExpired(now, payload -> fired[0]++);
+    }
+    long drained = System.nanoTime();
+    print(report, "ExpiryIndex", start, scheduled, cancelledAt, drained, deadlines.length, cancelled.length, fired[0]);
+  }
+
+  private static void runDelayQueue(long[] deadlines, int[] cancelled, int horizon, boolean report) {
+    now = 0;
+    DelayQueue<DelayedTimer> queue = new DelayQueue<>();
+    DelayedTimer[] handles = new DelayedTimer[deadlines.length];
+
+    long start = System.nanoTime();
+    for (int i = 0; i < deadlines.length; i++) {
+      handles[i] = new DelayedTimer(deadlines[i]);
+      queue.add(handles[i]);
+    }
+    long scheduled = System.nanoTime();
+    for (int i : cancelled) {
+      queue.remove(handles[i]);
+    }
+    long cancelledAt = System.nanoTime();
+    long fired = 0;
+    for (now = 1; now <= horizon; now++) {
+      while (queue.poll() != null) {
+        fired++;
+      }
+    }
+    long drained = System.nanoTime();
+    print(report, "DelayQueue", start, scheduled, cancelledAt, drained, deadlines.length, cancelled.length, fired);
+  }
+
+  private static void runTimingWheel(long[] deadlines, int[] cancelled, int horizon, boolean report) {
+    now = 0;
+    HashedTimingWheel wheel = new HashedTimingWheel(4096);
+    HashedTimingWheel.Entry[] handles = new HashedTimingWheel.Entry[deadlines.length];
+
+    long start = System.nanoTime();
+    for (int i = 0; i < deadlines.length; i++) {
+      handles[i] = wheel.schedule(deadlines[i]);
+    }
+    long scheduled = System.nanoTime();
+    for (int i : cancelled) {
+      wheel.cancel(handles[i]);
+    }
+    long cancelledAt = System.nanoTime();
+    long fired = 0;
+    for (now = 1; now <= horizon; now++) {
+      fired += wheel.advance();
+    }
+    long drained = System.nanoTime();
+    print(report, "TimingWheel", start, scheduled, cancelledAt, drained, deadlines.length, cancelled.length, fired);
+  }
+
+  private static void print(boolean report, String name, long start, long scheduled, long cancelled,
+                            long drained, int timers, int cancellations, long fired) {
+    if (report) {
+      System.out.printf("%-14s %14.1f %14.1f %14.1f   (%d fired)%n", name,
+              (double) (scheduled - start) / timers,
+              (double) (cancelled - scheduled) / Math.max(1, cancellations),
+              (double) (drained - cancelled) / Math.max(1, fired), fired);
+    }
+  }
+
+  /**
+   * DelayQueue element whose delay is measured against the simulated clock.
+   */
+  private static final class DelayedTimer implements Delayed {
+    private final long deadline;
+
+    DelayedTimer(long deadline) {
+      this.deadline = deadline;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(deadline - now, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+      return Long.compare(deadline, ((DelayedTimer) other).deadline);
+    }
+  }
+
+  /**
+   * Minimal single-level hashed timing wheel with a tick of one millisecond. Each bucket is an
+   * intrusive doubly linked list, so scheduling and cancelling are O(1); timers further away
+   * than one revolution wait for the required number of rounds.
+   */
+  private static final class HashedTimingWheel {
+
+    static final class Entry {
+      long rounds;
+      Entry prev;
+      Entry next;
+      int bucket = -1;
+    }
+
+    private final Entry[] buckets;
+    private final int mask;
+    private long tick = 0;
+
+    HashedTimingWheel(int size) {
+      buckets = new Entry[size];
+      mask = size - 1;
+    }
+
+    Entry schedule(long deadline) {
+      Entry entry = new Entry();
+      long ticks = Math.max(deadline, tick + 1);
+      entry.rounds = (ticks - tick - 1) / buckets.length;
+      entry.bucket = (int) (ticks & mask);
+      entry.next = buckets[entry.bucket];
+      if (entry.next != null) {
+        entry.next.prev = entry;
+      }
+      buckets[entry.bucket] = entry;
+      return entry;
+    }
+
+    void cancel(Entry entry) {
+      if (entry.bucket >= 0) {
+        unlink(entry);
+      }
+    }
+
+    // Advances the wheel up to the simulated clock and returns the number of expired entries
+    int advance() {
+      int fired = 0;
+      while (tick < now) {
+        tick++;
+        Entry entry = buckets[(int) (tick & mask)];
+        while (entry != null) {
+          Entry next = entry.next;
+          if (entry.rounds == 0) {
+            unlink(entry);
+            fired++;
+          } else {
+            entry.rounds--;
+          }
+          entry = next;
+        }
+      }
+      return fired;
+    }
+
+    private void unlink(Entry entry) {
+      if (entry.prev != null) {
+        entry.prev.next = entry.next;
+      } else {
+        buckets[entry.bucket] = entry.next;
+      }
+      if (entry.next != null) {
+        entry.next.prev = entry.prev;
+      }
+      entry.prev = null;
+      entry.next = null;
+      entry.bucket = -1;
+    }
+  }
+}
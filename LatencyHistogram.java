@@ -0,0 +1,124 @@
+import java.util.Arrays;
+
+/**
+ * Latency histogram with logarithmic buckets that are linearly subdivided, in the style of
+ * HdrHistogram. Values below 2^SUB_BUCKET_BITS are counted exactly; larger values fall into
+ * buckets whose width is at most 1 / 2^(SUB_BUCKET_BITS - 1) of their lower bound, so every
+ * reported percentile is within that relative error of the true value.
+ *
+ * Recording is a few shifts and an array increment without allocation. The histogram is
+ * not thread-safe: every thread records into its own histogram, and the histograms are
+ * merged with add() after the threads have finished.
+ */
+public class LatencyHistogram {
+
+  // 7 bits give 64 linear sub-buckets per power of two, i.e. a relative error below 1.6%
+  private static final int SUB_BUCKET_BITS = 7;
+  private static final int HALF_SUB_BUCKETS = 1 << (SUB_BUCKET_BITS - 1);
+  // Values are clamped to 2^MAX_VALUE_BITS - 1 nanoseconds, about 18 minutes
+  private static final int MAX_VALUE_BITS = 40;
+  private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+
+  private final long[] counts = new long[indexOf(MAX_VALUE) + 1];
+  private long totalCount = 0;
+  private long sum = 0;
+  private long max = 0;
+
+  /**
+   * Records a single value.
+   *
+   * @param value The value to record, e.g. a latency in nanoseconds. Negative values are
+   *              recorded as 0, values above the supported range as the largest value.
+   */
+  public void record(long value) {
+    long clamped = Math.max(0, Math.min(value, MAX_VALUE));
+    counts[indexOf(clamped)]++;
+    totalCount++;
+    sum += clamped;
+    max = Math.max(max, clamped);
+  }
+
+  /**
+   * Adds all values recorded by another histogram to this one.
+   *
+   * @param other The histogram whose counts are added.
+   */
+  public void add(LatencyHistogram other) {
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] += other.counts[i];
+    }
+    totalCount += other.totalCount;
+    sum += other.sum;
+    max = Math.max(max, other.max);
+  }
+
+  /**
+   * Removes all recorded values, so that the histogram can be reused.
+   */
+  public void reset() {
+    Arrays.fill(counts, 0);
+    totalCount = 0;
+    sum = 0;
+    max = 0;
+  }
+
+  /**
+   * Returns the value below or at which the given percentage of the recorded values lie.
+   *
+   * @param percentile The percentile, between 0 and 100.
+   * @return The highest value equivalent to the bucket holding the percentile, at most the
+   *         largest recorded value, or 0 if nothing was recorded.
+   */
+  public long valueAtPercentile(double percentile) {
+    if (totalCount == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(highestValueOf(i), max);
+      }
+    }
+    return max;
+  }
+
+  // Returns the number of recorded values
+  public long getTotalCount() {
+    return totalCount;
+  }
+
+  // Returns the largest recorded value
+  public long getMax() {
+    return max;
+  }
+
+  // Returns the mean of the recorded values, or 0 if nothing was recorded
+  public double getMean() {
+    return totalCount == 0 ? 0.0 : (double) sum / totalCount;
+  }
+
+  /**
+   * Maps a value to its bucket. Values below 2^SUB_BUCKET_BITS map to themselves. A larger
+   * value is shifted right until it has SUB_BUCKET_BITS significant bits; the shift selects
+   * the power of two and the remaining bits the linear sub-bucket within it.
+   */
+  private static int indexOf(long value) {
+    if (value < (1L << SUB_BUCKET_BITS)) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+    return shift * HALF_SUB_BUCKETS + (int) (value >>> shift);
+  }
+
+  // Returns the largest value that maps to the given bucket
+  private static long highestValueOf(int index) {
+    if (index < (1 << SUB_BUCKET_BITS)) {
+      return index;
+    }
+    int shift = index / HALF_SUB_BUCKETS - 1;
+    long subBucket = index - (long) shift * HALF_SUB_BUCKETS;
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
@@ -0,0 +1,443 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Streaming parser for LibSVM/SVMlight text files ("label index:value index:value ...")
+ * that emits one SparseVector per line. The file is memory-mapped through a FileChannel, and
+ * labels, indices and values are parsed directly from the bytes without creating Strings.
+ * The elements of a line are collected in reusable primitive arrays and turned into a
+ * SparseVector in O(nnz) by SparseVector.fromSortedArrays.
+ *
+ * parseParallel() splits the file at line boundaries into parts that are parsed on the
+ * ForkJoinPool. Each part is mapped in windows of at most WINDOW_SIZE bytes, so files larger
+ * than 2 GB are supported.
+ *
+ * The indices in the file are 1-based as in LibSVM and become index - 1 in the vectors.
+ * "qid:" tokens are skipped, and everything after a '#' on a line is treated as a comment.
+ */
+public class LibSvmParser {
+	// Largest part of a file that is mapped at once
+	private static final int WINDOW_SIZE = 1 << 28;
+	// Decimal numbers with at most this many significant digits are parsed exactly in double
+	// arithmetic, since both the digits and the power of ten are exactly representable
+	private static final int MAX_FAST_DIGITS = 15;
+	private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	/**
+	 * Receives the label and the vector of every parsed line.
+	 */
+	public interface VectorConsumer {
+		void accept(double label, SparseVector vector);
+	}
+
+	private final int dimension;
+
+	/**
+	 * Constructs a parser for vectors of the given length.
+	 *
+	 * @param dimension The length of the parsed vectors; the largest allowed index in the
+	 *                  file is dimension (1-based).
+	 */
+	public LibSvmParser(int dimension) {
+		this.dimension = dimension;
+	}
+
+	/**
+	 * Parses the file sequentially on the calling thread. The consumer receives the lines
+	 * in file order.
+	 *
+	 * @param file     The file to parse.
+	 * @param consumer The consumer receiving label and vector of every line.
+	 * @return The number of parsed lines.
+	 * @throws IOException If the file cannot be read.
+	 */
+	public long parse(Path file, VectorConsumer consumer) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return new RangeParser(channel, consumer).parse(0, channel.size());
+		}
+	}
+
+	/**
+	 * Parses the file in parallel on the common ForkJoinPool, one part per processor.
+	 *
+	 * @param file     The file to parse.
+	 * @param consumer The consumer receiving label and vector of every line. It is called
+	 *                 concurrently from several threads and in no particular order.
+	 * @return The number of parsed lines.
+	 * @throws IOException If the file cannot be read.
+	 */
+	public long parseParallel(Path file, VectorConsumer consumer) throws IOException {
+		return parseParallel(file, Runtime.getRuntime().availableProcessors(), consumer);
+	}
+
+	/**
+	 * Parses the file in parallel on the common ForkJoinPool. The file is split into the
+	 * given number of parts of roughly equal size, each starting at the beginning of a line.
+	 *
+	 * @param file     The file to parse.
+	 * @param parts    The number of parts parsed in parallel.
+	 * @param consumer The consumer receiving label and vector of every line. It is called
+	 *                 concurrently from several threads and in no particular order.
+	 * @return The number of parsed lines.
+	 * @throws IOException If the file cannot be read.
+	 */
+	public long parseParallel(Path file, int parts, VectorConsumer consumer) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			long[] bounds = splitAtLines(channel, size, Math.max(1, parts));
+
+			List<ForkJoinTask<Long>> tasks = new ArrayList<>();
+			for (int i = 0; i + 1 < bounds.length; i++) {
+				long from = bounds[i];
+				long to = bounds[i + 1];
+				if (from < to) {
+					tasks.add(ForkJoinPool.commonPool().submit(() -> new RangeParser(channel, consumer).parse(from, to)));
+				}
+			}
+			long lines = 0;
+			for (ForkJoinTask<Long> task : tasks) {
+				lines += task.join();
+			}
+			return lines;
+		}
+	}
+
+	/**
+	 * Determines the boundaries of the parts: every boundary except the first and the last
+	 * is moved forward to the byte following the next line break.
+	 */
+	private static long[] splitAtLines(FileChannel channel, long size, int parts) throws IOException {
+		long[] bounds = new long[parts + 1];
+		bounds[parts] = size;
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		for (int i = 1; i < parts; i++) {
+			long position = Math.max(bounds[i - 1], size / parts * i);
+			bounds[i] = size;
+			search:
+			while (position < size) {
+				buffer.clear();
+				int read = channel.read(buffer, position);
+				if (read <= 0) {
+					break;
+				}
+				for (int j = 0; j < read; j++) {
+					if (buffer.get(j) == '\n') {
+						bounds[i] = position + j + 1;
+						break search;
+					}
+				}
+				position += read;
+			}
+		}
+		return bounds;
+	}
+
+	/**
+	 * Parser of one part of the file. Holds the reusable buffers of the elements of a line,
+	 * so every thread needs its own instance.
+	 */
+	private final class RangeParser {
+		private final FileChannel channel;
+		private final VectorConsumer consumer;
+		private MappedByteBuffer buffer;
+		// Position of the next byte to parse within the buffer
+		private int pos;
+		private int limit;
+		// Offset of the buffer in the file, used in error messages
+		private long base;
+		private int[] indices = new int[64];
+		private double[] values = new double[64];
+		// Buffer position of each element's index token, used in error messages
+		private int[] tokenPositions = new int[64];
+
+		RangeParser(FileChannel channel, VectorConsumer consumer) {
+			this.channel = channel;
+			this.consumer = consumer;
+		}
+
+		/**
+		 * Parses all lines between the byte offsets from (a line start) and to.
+		 *
+		 * @return The number of parsed lines.
+		 */
+		long parse(long from, long to) throws IOException {
+			long lines = 0;
+			long windowStart = from;
+			while (windowStart < to) {
+				long windowEnd = Math.min(to, windowStart + WINDOW_SIZE);
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowEnd - windowStart);
+				base = windowStart;
+				limit = buffer.limit();
+				// Unless this is the last window, stop before the last, possibly cut line
+				if (windowEnd < to) {
+					int lastBreak = limit - 1;
+					while (lastBreak >= 0 && buffer.get(lastBreak) != '\n') {
+						lastBreak--;
+					}
+					if (lastBreak < 0) {
+						throw new IOException("Line longer than " + WINDOW_SIZE + " bytes at offset " + windowStart);
+					}
+					limit = lastBreak + 1;
+				}
+				pos = 0;
+				while (pos < limit) {
+					if (parseLine()) {
+						lines++;
+					}
+				}
+				windowStart += limit;
+			}
+			return lines;
+		}
+
+		/**
+		 * Parses the line starting at pos and moves pos behind its line break.
+		 *
+		 * @return true if the line held a label and was emitted, false if it was blank.
+		 */
+		private boolean parseLine() {
+			skipBlanks();
+			if (pos >= limit || buffer.get(pos) == '\n' || buffer.get(pos) == '#') {
+				skipToNextLine();
+				return false;
+			}
+			double label = parseDouble();
+			int count = 0;
+			boolean sorted = true;
+			while (true) {
+				skipBlanks();
+				if (pos >= limit) {
+					break;
+				}
+				byte b = buffer.get(pos);
+				if (b == '\n' || b == '#') {
+					skipToNextLine();
+					break;
+				}
+				if (b == 'q') {
+					// qid:<n> groups lines for ranking and is not part of the vector
+					skipToken();
+					continue;
+				}
+				int tokenPosition = pos;
+				int index = parseInt() - 1;
+				if (index < 0 || index >= dimension) {
+					throw error("Index out of range", tokenPosition);
+				}
+				if (pos >= limit || buffer.get(pos) != ':') {
+					throw error("Expected ':'");
+				}
+				pos++;
+				double value = parseDouble();
+				if (count == indices.length) {
+					indices = Arrays.copyOf(indices, count * 2);
+					values = Arrays.copyOf(values, count * 2);
+					tokenPositions = Arrays.copyOf(tokenPositions, count * 2);
+				}
+				if (count > 0 && index <= indices[count - 1]) {
+					sorted = false;
+				}
+				indices[count] = index;
+				values[count] = value;
+				tokenPositions[count] = tokenPosition;
+				count++;
+			}
+			if (!sorted) {
+				sortElements(count);
+			}
+			consumer.accept(label, SparseVector.fromSortedArrays(dimension, indices, values, count));
+			return true;
+		}
+
+		// Parses an unsigned decimal integer
+		private int parseInt() {
+			int start = pos;
+			long result = 0;
+			while (pos < limit) {
+				int digit = buffer.get(pos) - '0';
+				if (digit < 0 || digit > 9) {
+					break;
+				}
+				result = result * 10 + digit;
+				if (result > Integer.MAX_VALUE) {
+					throw error("Index too large");
+				}
+				pos++;
+			}
+			if (pos == start) {
+				throw error("Expected an index");
+			}
+			return (int) result;
+		}
+
+		/**
+		 * Parses a decimal number of the form [+-]digits[.digits][(e|E)[+-]digits]. Numbers
+		 * with few significant digits and a small exponent are computed exactly from the
+		 * digits; all others fall back to Double.parseDouble on the token.
+		 */
+		private double parseDouble() {
+			int start = pos;
+			boolean negative = false;
+			byte b = pos < limit ? buffer.get(pos) : 0;
+			if (b == '-' || b == '+') {
+				negative = b == '-';
+				pos++;
+			}
+			long mantissa = 0;
+			int digits = 0;
+			int exponent = 0;
+			boolean anyDigit = false;
+			boolean fraction = false;
+			while (pos < limit) {
+				b = buffer.get(pos);
+				if (b >= '0' && b <= '9') {
+					anyDigit = true;
+					if (mantissa == 0 && b == '0') {
+						// Leading zeros are not significant
+						if (fraction) {
+							exponent--;
+						}
+					} else if (digits < 18) {
+						mantissa = mantissa * 10 + (b - '0');
+						digits++;
+						if (fraction) {
+							exponent--;
+						}
+					} else {
+						// Too many digits for the fast path; only keep track of the magnitude
+						digits++;
+						if (!fraction) {
+							exponent++;
+						}
+					}
+				} else if (b == '.' && !fraction) {
+					fraction = true;
+				} else {
+					break;
+				}
+				pos++;
+			}
+			if (pos < limit && (buffer.get(pos) == 'e' || buffer.get(pos) == 'E') && anyDigit) {
+				pos++;
+				boolean negativeExponent = false;
+				if (pos < limit && (buffer.get(pos) == '-' || buffer.get(pos) == '+')) {
+					negativeExponent = buffer.get(pos) == '-';
+					pos++;
+				}
+				int exponentStart = pos;
+				int explicit = 0;
+				while (pos < limit && buffer.get(pos) >= '0' && buffer.get(pos) <= '9') {
+					explicit = Math.min(explicit * 10 + (buffer.get(pos) - '0'), 100000);
+					pos++;
+				}
+				if (pos == exponentStart) {
+					throw error("Expected an exponent");
+				}
+				exponent += negativeExponent ? -explicit : explicit;
+			}
+			if (!anyDigit || (pos < limit && !isDelimiter(buffer.get(pos)))) {
+				// Not a plain decimal number (e.g. NaN or Infinity): let Java parse the token
+				pos = start;
+				skipToken();
+				return parseSlow(start, pos);
+			}
+
+			double result;
+			if (digits <= MAX_FAST_DIGITS && Math.abs(exponent) <= 22) {
+				result = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+			} else if (mantissa == 0) {
+				result = 0.0;
+			} else {
+				// The token includes the sign
+				return parseSlow(start, pos);
+			}
+			return negative ? -result : result;
+		}
+
+		// Parses the bytes [from, to) with Double.parseDouble
+		private double parseSlow(int from, int to) {
+			byte[] token = new byte[to - from];
+			for (int i = 0; i < token.length; i++) {
+				token[i] = buffer.get(from + i);
+			}
+			try {
+				return Double.parseDouble(new String(token, StandardCharsets.US_ASCII));
+			} catch (NumberFormatException e) {
+				pos = from;
+				throw error("Invalid number");
+			}
+		}
+
+		// Sorts the elements of the line by index and rejects duplicate indices
+		private void sortElements(int count) {
+			long[] keys = new long[count];
+			for (int i = 0; i < count; i++) {
+				keys[i] = ((long) indices[i] << 32) | i;
+			}
+			Arrays.sort(keys);
+			int[] sortedIndices = new int[indices.length];
+			double[] sortedValues = new double[values.length];
+			for (int i = 0; i < count; i++) {
+				sortedIndices[i] = (int) (keys[i] >> 32);
+				sortedValues[i] = values[(int) keys[i]];
+				if (i > 0 && sortedIndices[i] == sortedIndices[i - 1]) {
+					// Equal indices keep their line order, so this is the later occurrence
+					throw error("Duplicate index " + (sortedIndices[i] + 1), tokenPositions[(int) keys[i]]);
+				}
+			}
+			indices = sortedIndices;
+			values = sortedValues;
+		}
+
+		private boolean isDelimiter(byte b) {
+			return b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == ':' || b == '#';
+		}
+
+		private void skipBlanks() {
+			while (pos < limit) {
+				byte b = buffer.get(pos);
+				if (b != ' ' && b != '\t' && b != '\r') {
+					return;
+				}
+				pos++;
+			}
+		}
+
+		private void skipToken() {
+			while (pos < limit) {
+				byte b = buffer.get(pos);
+				if (b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+					return;
+				}
+				pos++;
+			}
+		}
+
+		private void skipToNextLine() {
+			while (pos < limit && buffer.get(pos) != '\n') {
+				pos++;
+			}
+			pos++;
+		}
+
+		private IllegalArgumentException error(String message) {
+			return error(message, pos);
+		}
+
+		private IllegalArgumentException error(String message, int position) {
+			return new IllegalArgumentException(message + " at offset " + (base + position));
+		}
+	}
+}
@@ -1,38 +1,620 @@
+import java.io.FileWriter;
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.Random;
-import java.util.Set;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 /**
- * The Main class contains the main method that demonstrates the usage of the Red-Black Tree.
- * It generates 15 unique random Integer values, creates IntComparable objects for each value,
- * and inserts them into a Red-Black Tree. The state of the tree is visualized at each insertion
- * step by printing the DOT representation to a file.
+ * The Main class contains a configurable, multi-threaded load driver for the Red-Black Tree
+ * (through ShardedRBTree) and the sparse vector (through ConcurrentSparseAccumulator).
+ * Worker threads run a random mix of operations on keys drawn from a uniform, Zipfian or
+ * sequential distribution for a fixed duration. Every operation is timed individually and
+ * recorded in per-thread latency histograms, which are merged per reporting interval, so the
+ * report shows throughput and p50/p99/p999 latencies over time as well as for the whole run.
+ *
+ * By default the driver is closed-loop: each worker starts its next operation when the
+ * previous one has finished, and latencies are measured from the actual start. Such numbers
+ * suffer from coordinated omission, because the operations that would have been issued
+ * during a stall are never issued. With --rate the driver is open-loop instead: the workers
+ * issue operations on a fixed schedule that together yields the given rate, and every latency
+ * is measured from the intended start of the operation, so the time an operation waited
+ * behind a stalled predecessor counts towards its latency. Use a rate below the saturation
+ * throughput, which a closed-loop run reports.
+ *
+ * <p>The "zipf" distribution scrambles the popularity ranks over the key space like YCSB's
+ * ScrambledZipfian, so the hot keys are spread over all shards of the range-partitioned tree.
+ * "zipf-clustered" uses the ranks as keys, which puts the hot keys into one contiguous range
+ * and therefore into a single shard.
+ *
+ * <p>Results are printed to the console and optionally written as CSV and JSON.
+ *
+ * <p>Usage: java Main [--target rbtree|sparse] [--mix op=weight,...]
+ * [--distribution uniform|zipf|zipf-clustered|sequential] [--keys n] [--threads n] [--virtual]
+ * [--rate ops/s] [--duration seconds] [--warmup seconds] [--interval millis] [--shards n]
+ * [--out prefix]
  */
 public class Main {
-  public static void main(String[] args) {
 
-    // Create a Red-Black Tree to store IntComparable objects
-    RBTree<IntComparable> redBlackTree = new RBTree<>();
+  // Exponent of the Zipfian distribution, as used by YCSB
+  private static final double ZIPF_THETA = 0.99;
+  // Open-loop workers spin instead of parking for waits shorter than this, in nanoseconds
+  private static final long SPIN_NANOS = 50_000;
 
-    // Set to keep track of generated unique values
-    Set<Integer> generatedValues = new HashSet<>();
-    // Random object for generating random values
-    Random random = new Random();
+  public static void main(String[] args) throws Exception {
+    Config config;
+    Workload workload;
+    int[] cumulativeWeights;
+    try {
+      config = Config.parse(args);
+      workload = config.target.equals("sparse")
+              ? new SparseWorkload(config.keys)
+              : new TreeWorkload(config.keys, config.shards);
+      // Checks the names in --mix against the operations of the target
+      cumulativeWeights = config.cumulativeWeights(workload.operations());
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println("Usage: java Main [--target rbtree|sparse] [--mix op=weight,...]"
+              + " [--distribution uniform|zipf|zipf-clustered|sequential] [--keys n] [--threads n] [--virtual]"
+              + " [--rate ops/s] [--duration seconds] [--warmup seconds] [--interval millis] [--shards n]"
+              + " [--out prefix]");
+      System.exit(1);
+      return;
+    }
+
+    String[] operations = workload.operations();
+    ZipfianKeys zipfian = config.distribution.startsWith("zipf")
+            ? new ZipfianKeys(config.keys, config.distribution.equals("zipf"))
+            : null;
+
+    System.out.printf("Prefilling %s with %d keys...%n", config.target, config.keys);
+    workload.prefill();
+
+    int intervals = (int) Math.max(1, (config.durationSeconds * 1000L + config.intervalMillis - 1) / config.intervalMillis);
+    LatencyHistogram[][] timeline = new LatencyHistogram[intervals][operations.length];
+    for (LatencyHistogram[] interval : timeline) {
+      for (int op = 0; op < operations.length; op++) {
+        interval[op] = new LatencyHistogram();
+      }
+    }
+    LongAdder completed = new LongAdder();
+
+    long runStart = System.nanoTime();
+    long measureStart = runStart + config.warmupSeconds * 1_000_000_000L;
+    long stop = measureStart + config.durationSeconds * 1_000_000_000L;
+    long intervalNanos = config.intervalMillis * 1_000_000L;
+
+    // Start the workers
+    List<Thread> workers = new ArrayList<>();
+    for (int t = 0; t < config.threads; t++) {
+      int threadIndex = t;
+      Runnable worker = () -> runWorker(workload, cumulativeWeights, config, zipfian, threadIndex,
+              runStart, measureStart, stop, intervalNanos, timeline, completed);
+      workers.add(config.virtual ? startVirtualThread(worker) : startPlatformThread(worker, "worker-" + t));
+    }
+    System.out.printf("Running %d %s threads for %d s after %d s warmup, %s%n", config.threads,
+            config.virtual ? "virtual" : "platform", config.durationSeconds, config.warmupSeconds,
+            config.rate > 0 ? String.format("open-loop at %,.0f ops/s", config.rate) : "closed-loop");
+
+    // Print the live throughput while the workers run
+    long previous = 0;
+    long next = System.nanoTime() + intervalNanos;
+    while (System.nanoTime() < stop) {
+      Thread.sleep(Math.max(1, (next - System.nanoTime()) / 1_000_000));
+      long total = completed.sum();
+      System.out.printf("  %,12.0f ops/s%s%n", (total - previous) * 1e9 / intervalNanos,
+              System.nanoTime() < measureStart ? " (warmup)" : "");
+      previous = total;
+      next += intervalNanos;
+    }
+    for (Thread worker : workers) {
+      worker.join();
+    }
+
+    // Merge the intervals into the summary of the whole run
+    LatencyHistogram[] summary = new LatencyHistogram[operations.length];
+    for (int op = 0; op < operations.length; op++) {
+      summary[op] = new LatencyHistogram();
+      for (LatencyHistogram[] interval : timeline) {
+        summary[op].add(interval[op]);
+      }
+    }
+    printSummary(operations, summary, config.durationSeconds);
+    if (config.out != null) {
+      writeCsv(config.out + ".csv", operations, timeline, summary, config);
+      writeJson(config.out + ".json", operations, timeline, summary, config);
+      System.out.println("Results written to " + config.out + ".csv and " + config.out + ".json");
+    }
+  }
+
+  /**
+   * Runs operations until the stop time. Latencies are recorded into one histogram per
+   * operation for the current interval; when the worker enters a new interval, the finished
+   * histograms are merged into the shared timeline and reused.
+   *
+   * In open-loop mode the worker owns every threads-th slot of the global schedule. An
+   * operation starts at its slot, or immediately if the worker is behind, and its latency and
+   * interval are taken from the slot rather than from the actual start.
+   */
+  private static void runWorker(Workload workload, int[] cumulativeWeights, Config config, ZipfianKeys zipfian,
+                                int threadIndex, long runStart, long measureStart, long stop, long intervalNanos,
+                                LatencyHistogram[][] timeline, LongAdder completed) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int operationCount = cumulativeWeights.length;
+    LatencyHistogram[] current = new LatencyHistogram[operationCount];
+    for (int op = 0; op < operationCount; op++) {
+      current[op] = new LatencyHistogram();
+    }
+    int currentInterval = -1;
+    long sequence = threadIndex;
+    // Time between two operations of this worker in open-loop mode, 0 in closed-loop mode
+    long period = config.rate > 0 ? Math.max(1, (long) (1e9 * config.threads / config.rate)) : 0;
+    long intended = runStart + period * threadIndex / config.threads;
+
+    while (true) {
+      // Pick the operation by its weight and the key from the distribution
+      int draw = random.nextInt(cumulativeWeights[operationCount - 1]);
+      int op = 0;
+      while (draw >= cumulativeWeights[op]) {
+        op++;
+      }
+      int key;
+      switch (config.distribution) {
+        case "zipf":
+        case "zipf-clustered":
+          key = zipfian.next(random);
+          break;
+        case "sequential":
+          key = (int) (sequence % config.keys);
+          sequence += config.threads;
+          break;
+        default:
+          key = random.nextInt(config.keys);
+          break;
+      }
+
+      long start = period > 0 ? intended : System.nanoTime();
+      if (start >= stop) {
+        break;
+      }
+      if (period > 0) {
+        awaitTime(start);
+        intended += period;
+      }
+      workload.execute(op, key);
+      long latency = System.nanoTime() - start;
+      completed.increment();
+
+      if (start >= measureStart) {
+        int interval = (int) Math.min((start - measureStart) / intervalNanos, timeline.length - 1);
+        if (interval != currentInterval) {
+          flush(current, timeline, currentInterval);
+          currentInterval = interval;
+        }
+        current[op].record(latency);
+      }
+    }
+    flush(current, timeline, currentInterval);
+  }
+
+  // Waits until System.nanoTime() reaches the given time; returns at once if it has passed
+  private static void awaitTime(long time) {
+    long remaining;
+    while ((remaining = time - System.nanoTime()) > 0) {
+      if (remaining > SPIN_NANOS) {
+        LockSupport.parkNanos(remaining - SPIN_NANOS);
+      } else {
+        Thread.onSpinWait();
+      }
+    }
+  }
+
+  // Merges the histograms of one worker into the shared timeline and resets them
+  private static void flush(LatencyHistogram[] current, LatencyHistogram[][] timeline, int interval) {
+    if (interval < 0) {
+      return;
+    }
+    for (int op = 0; op < current.length; op++) {
+      LatencyHistogram shared = timeline[interval][op];
+      synchronized (shared) {
+        shared.add(current[op]);
+      }
+      current[op].reset();
+    }
+  }
+
+  private static Thread startPlatformThread(Runnable runnable, String name) {
+    Thread thread = new Thread(runnable, name);
+    thread.start();
+    return thread;
+  }
+
+  /**
+   * Starts a virtual thread through Thread.ofVirtual() if the running JDK provides it
+   * (JDK 21 or later). The method is looked up reflectively so that the driver still compiles
+   * and runs on older JDKs, where it falls back to a platform thread.
+   */
+  private static Thread startVirtualThread(Runnable runnable) {
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Method start = Class.forName("java.lang.Thread$Builder").getMethod("start", Runnable.class);
+      return (Thread) start.invoke(builder, runnable);
+    } catch (ReflectiveOperationException e) {
+      System.err.println("Virtual threads are not available, using a platform thread");
+      return startPlatformThread(runnable, "worker");
+    }
+  }
+
+  private static void printSummary(String[] operations, LatencyHistogram[] summary, long durationSeconds) {
+    System.out.printf("%n%-10s %12s %12s %10s %10s %10s %10s %10s%n", "operation", "count", "ops/s",
+            "mean us", "p50 us", "p99 us", "p999 us", "max us");
+    for (int op = 0; op < operations.length; op++) {
+      LatencyHistogram h = summary[op];
+      System.out.printf("%-10s %12d %12.0f %10.2f %10.2f %10.2f %10.2f %10.2f%n", operations[op],
+              h.getTotalCount(), (double) h.getTotalCount() / durationSeconds, h.getMean() / 1000.0,
+              h.valueAtPercentile(50) / 1000.0, h.valueAtPercentile(99) / 1000.0,
+              h.valueAtPercentile(99.9) / 1000.0, h.getMax() / 1000.0);
+    }
+  }
+
+  /**
+   * Writes one CSV row per interval and operation, followed by one "total" row per operation.
+   */
+  private static void writeCsv(String filename, String[] operations, LatencyHistogram[][] timeline,
+                               LatencyHistogram[] summary, Config config) throws IOException {
+    try (FileWriter writer = new FileWriter(filename)) {
+      writer.write("interval_start_s,operation,count,ops_per_s,mean_us,p50_us,p99_us,p999_us,max_us\n");
+      double intervalSeconds = config.intervalMillis / 1000.0;
+      for (int i = 0; i < timeline.length; i++) {
+        for (int op = 0; op < operations.length; op++) {
+          writer.write(csvRow(String.format(Locale.ROOT, "%.3f", i * intervalSeconds), operations[op],
+                  timeline[i][op], intervalSeconds));
+        }
+      }
+      for (int op = 0; op < operations.length; op++) {
+        writer.write(csvRow("total", operations[op], summary[op], config.durationSeconds));
+      }
+    }
+  }
+
+  private static String csvRow(String interval, String operation, LatencyHistogram h, double seconds) {
+    return String.format(Locale.ROOT, "%s,%s,%d,%.1f,%.3f,%.3f,%.3f,%.3f,%.3f%n", interval, operation,
+            h.getTotalCount(), h.getTotalCount() / seconds, h.getMean() / 1000.0,
+            h.valueAtPercentile(50) / 1000.0, h.valueAtPercentile(99) / 1000.0,
+            h.valueAtPercentile(99.9) / 1000.0, h.getMax() / 1000.0);
+  }
+
+  /**
+   * Writes the configuration, the summary and the timeline as a JSON document.
+   */
+  private static void writeJson(String filename, String[] operations, LatencyHistogram[][] timeline,
+                                LatencyHistogram[] summary, Config config) throws IOException {
+    StringBuilder json = new StringBuilder("{\n");
+    json.append(String.format(Locale.ROOT, "  \"config\": {\"target\": \"%s\", \"mix\": \"%s\", "
+                    + "\"distribution\": \"%s\", \"keys\": %d, \"threads\": %d, \"virtual\": %b, "
+                    + "\"open_loop\": %b, \"rate_ops_s\": %.1f, "
+                    + "\"duration_s\": %d, \"warmup_s\": %d, \"interval_ms\": %d},\n",
+            config.target, config.mixString(), config.distribution, config.keys, config.threads,
+            config.virtual, config.rate > 0, config.rate, config.durationSeconds, config.warmupSeconds,
+            config.intervalMillis));
+    json.append("  \"summary\": [\n");
+    for (int op = 0; op < operations.length; op++) {
+      json.append("    ").append(jsonStats(operations[op], summary[op], config.durationSeconds))
+              .append(op + 1 < operations.length ? ",\n" : "\n");
+    }
+    json.append("  ],\n  \"timeline\": [\n");
+    double intervalSeconds = config.intervalMillis / 1000.0;
+    for (int i = 0; i < timeline.length; i++) {
+      json.append(String.format(Locale.ROOT, "    {\"interval_start_s\": %.3f, \"operations\": [", i * intervalSeconds));
+      for (int op = 0; op < operations.length; op++) {
+        json.append(jsonStats(operations[op], timeline[i][op], intervalSeconds))
+                .append(op + 1 < operations.length ? ", " : "");
+      }
+      json.append(i + 1 < timeline.length ? "]},\n" : "]}\n");
+    }
+    json.append("  ]\n}\n");
+    try (FileWriter writer = new FileWriter(filename)) {
+      writer.write(json.toString());
+    }
+  }
+
+  private static String jsonStats(String operation, LatencyHistogram h, double seconds) {
+    return String.format(Locale.ROOT, "{\"operation\": \"%s\", \"count\": %d, \"ops_per_s\": %.1f, "
+                    + "\"mean_us\": %.3f, \"p50_us\": %.3f, \"p99_us\": %.3f, \"p999_us\": %.3f, \"max_us\": %.3f}",
+            operation, h.getTotalCount(), h.getTotalCount() / seconds, h.getMean() / 1000.0,
+            h.valueAtPercentile(50) / 1000.0, h.valueAtPercentile(99) / 1000.0,
+            h.valueAtPercentile(99.9) / 1000.0, h.getMax() / 1000.0);
+  }
+
+  /**
+   * Command line configuration of the driver.
+   */
+  private static final class Config {
+    String target = "rbtree";
+    Map<String, Integer> mix = new LinkedHashMap<>();
+    String distribution = "uniform";
+    int keys = 1_000_000;
+    int threads = Runtime.getRuntime().availableProcessors();
+    boolean virtual = false;
+    // Target operations per second of all workers together; 0 runs closed-loop
+    double rate = 0;
+    long durationSeconds = 10;
+    long warmupSeconds = 2;
+    long intervalMillis = 1000;
+    int shards = 16;
+    String out = null;
+
+    static Config parse(String[] args) {
+      Config config = new Config();
+      for (int i = 0; i < args.length; i++) {
+        String option = args[i];
+        if (option.equals("--virtual")) {
+          config.virtual = true;
+          continue;
+        }
+        if (i + 1 >= args.length) {
+          throw new IllegalArgumentException("Missing value for " + option);
+        }
+        String value = args[++i];
+        try {
+          switch (option) {
+            case "--target":
+              config.target = oneOf(value, "rbtree", "sparse");
+              break;
+            case "--mix":
+              for (String entry : value.split(",")) {
+                String[] parts = entry.split("=");
+                config.mix.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+              }
+              break;
+            case "--distribution":
+              config.distribution = oneOf(value, "uniform", "zipf", "zipf-clustered", "sequential");
+              break;
+            case "--keys":
+              config.keys = positive(Integer.parseInt(value), option);
+              break;
+            case "--threads":
+              config.threads = positive(Integer.parseInt(value), option);
+              break;
+            case "--rate":
+              config.rate = Double.parseDouble(value);
+              if (!(config.rate > 0)) {
+                throw new IllegalArgumentException(option + " must be positive");
+              }
+              break;
+            case "--duration":
+              config.durationSeconds = positive(Integer.parseInt(value), option);
+              break;
+            case "--warmup":
+              config.warmupSeconds = Math.max(0, Integer.parseInt(value));
+              break;
+            case "--interval":
+              config.intervalMillis = positive(Integer.parseInt(value), option);
+              break;
+            case "--shards":
+              config.shards = positive(Integer.parseInt(value), option);
+              break;
+            case "--out":
+              config.out = value;
+              break;
+            default:
+              throw new IllegalArgumentException("Unknown option " + option);
+          }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+          throw new IllegalArgumentException("Invalid value for " + option + ": " + value);
+        }
+      }
+      return config;
+    }
+
+    /**
+     * Returns the running sums of the operation weights in the order of the operations,
+     * using the default weights of the target if no mix was given.
+     */
+    int[] cumulativeWeights(String[] operations) {
+      if (mix.isEmpty()) {
+        int[] defaults = target.equals("sparse") ? new int[] {90, 9, 1} : new int[] {20, 70, 10};
+        for (int op = 0; op < operations.length; op++) {
+          mix.put(operations[op], defaults[op]);
+        }
+      }
+      List<String> known = List.of(operations);
+      for (String name : mix.keySet()) {
+        if (!known.contains(name)) {
+          throw new IllegalArgumentException("Unknown operation " + name + ", expected one of " + known);
+        }
+      }
+      int[] cumulative = new int[operations.length];
+      int sum = 0;
+      for (int op = 0; op < operations.length; op++) {
+        sum += Math.max(0, mix.getOrDefault(operations[op], 0));
+        cumulative[op] = sum;
+      }
+      if (sum == 0) {
+        throw new IllegalArgumentException("The operation mix has no positive weight");
+      }
+      return cumulative;
+    }
 
-    // Generate 15 unique random Integer values and insert them into the RB-Tree
-    int i = 1;
-    while (generatedValues.size() < 15) {
-      int randomNumber = random.nextInt(100);
-      // If the generated value is unique, add it to the RB-Tree
-      if (generatedValues.add(randomNumber)) {
-        IntComparable intComparable = new IntComparable(randomNumber);
-        redBlackTree.insert(intComparable);
+    String mixString() {
+      StringBuilder result = new StringBuilder();
+      for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+        result.append(result.length() == 0 ? "" : ",").append(entry.getKey()).append('=').append(entry.getValue());
+      }
+      return result.toString();
+    }
+
+    private static String oneOf(String value, String... allowed) {
+      for (String candidate : allowed) {
+        if (candidate.equals(value)) {
+          return value;
+        }
+      }
+      throw new IllegalArgumentException("Invalid value " + value + ", expected one of " + List.of(allowed));
+    }
 
-        // Print the current state of the Red-Black Tree to a DOT file
-        redBlackTree.printDOT("insert_step_" + i + ".dot");
-        i++;
+    private static int positive(int value, String option) {
+      if (value <= 0) {
+        throw new IllegalArgumentException(option + " must be positive");
       }
+      return value;
+    }
+  }
+
+  /**
+   * Data structure under load. Operations are identified by their position in operations().
+   */
+  private interface Workload {
+    String[] operations();
+
+    void prefill();
+
+    void execute(int operation, int key);
+  }
+
+  /**
+   * Inserts, looks up and deletes keys of a ShardedRBTree. The keys are created up front,
+   * so that no allocation is timed, and half of them are inserted before the run.
+   */
+  private static final class TreeWorkload implements Workload {
+    private final ShardedRBTree<IntComparable> tree;
+    private final IntComparable[] keys;
+
+    TreeWorkload(int keyCount, int shards) {
+      tree = new ShardedRBTree<>(shards);
+      keys = new IntComparable[keyCount];
+      for (int i = 0; i < keyCount; i++) {
+        keys[i] = new IntComparable(i);
+      }
+    }
+
+    @Override
+    public String[] operations() {
+      return new String[] {"insert", "contains", "delete"};
+    }
+
+    @Override
+    public void prefill() {
+      List<IntComparable> half = new ArrayList<>(keys.length / 2);
+      for (int i = 0; i < keys.length; i += 2) {
+        half.add(keys[i]);
+      }
+      // A shuffled batch lets the tree sample its shard boundaries from the whole key range
+      Collections.shuffle(half);
+      tree.insertAll(half);
+    }
+
+    @Override
+    public void execute(int operation, int key) {
+      switch (operation) {
+        case 0:
+          tree.add(keys[key]);
+          break;
+        case 1:
+          tree.contains(keys[key]);
+          break;
+        default:
+          tree.delete(keys[key]);
+          break;
+      }
+    }
+  }
+
+  /**
+   * Adds into, reads from and snapshots a ConcurrentSparseAccumulator whose length is the
+   * number of keys.
+   */
+  private static final class SparseWorkload implements Workload {
+    private final ConcurrentSparseAccumulator accumulator;
+
+    SparseWorkload(int keyCount) {
+      accumulator = new ConcurrentSparseAccumulator(keyCount);
+    }
+
+    @Override
+    public String[] operations() {
+      return new String[] {"add", "get", "snapshot"};
+    }
+
+    @Override
+    public void prefill() {
+      for (int i = 0; i < accumulator.getLength(); i += 2) {
+        accumulator.addTo(i, 1.0);
+      }
+    }
+
+    @Override
+    public void execute(int operation, int key) {
+      switch (operation) {
+        case 0:
+          accumulator.addTo(key, 1.0);
+          break;
+        case 1:
+          accumulator.getElement(key);
+          break;
+        default:
+          accumulator.snapshot();
+          break;
+      }
+    }
+  }
+
+  /**
+   * Zipfian distribution over [0, n) as described by Gray et al. and used by YCSB: rank 0 is
+   * the most popular, and the popularity of rank i is proportional to 1 / (i + 1)^theta.
+   * The normalization constant is computed once in O(n); drawing a key takes O(1).
+   *
+   * Unscrambled, the rank is the key. Scrambled, the key is a hash of the rank modulo n, as in
+   * YCSB's ScrambledZipfian; colliding ranks share a key, so a few keys are never drawn.
+   */
+  private static final class ZipfianKeys {
+    private final int n;
+    private final boolean scrambled;
+    private final double zetaN;
+    private final double alpha;
+    private final double eta;
+
+    ZipfianKeys(int n, boolean scrambled) {
+      this.n = n;
+      this.scrambled = scrambled;
+      double zeta = 0.0;
+      for (int i = 1; i <= n; i++) {
+        zeta += 1.0 / Math.pow(i, ZIPF_THETA);
+      }
+      zetaN = zeta;
+      double zeta2 = 1.0 + 1.0 / Math.pow(2, ZIPF_THETA);
+      alpha = 1.0 / (1.0 - ZIPF_THETA);
+      eta = (1.0 - Math.pow(2.0 / n, 1.0 - ZIPF_THETA)) / (1.0 - zeta2 / zetaN);
+    }
+
+    int next(ThreadLocalRandom random) {
+      int rank = nextRank(random);
+      return scrambled ? (int) Long.remainderUnsigned(mix(rank), n) : rank;
+    }
+
+    private int nextRank(ThreadLocalRandom random) {
+      double u = random.nextDouble();
+      double uz = u * zetaN;
+      if (uz < 1.0) {
+        return 0;
+      }
+      if (uz < 1.0 + Math.pow(0.5, ZIPF_THETA)) {
+        return Math.min(1, n - 1);
+      }
+      return (int) Math.min(n - 1, (long) (n * Math.pow(eta * u - eta + 1, alpha)));
+    }
+
+    // SplitMix64 finalizer, spreads neighboring ranks over the whole key space
+    private static long mix(long rank) {
+      long h = (rank + 0x9E3779B97F4A7C15L) * 0xBF58476D1CE4E5B9L;
+      h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+      return h ^ (h >>> 31);
     }
   }
 }
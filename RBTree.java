@@ -1,12 +1,14 @@
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
  * Red-Black Tree implementation that maintains balance during insertions.
  *
  * @param <T> The type of data stored in the Red-Black Tree, must extend Comparable.
  */
-public class RBTree<T extends Comparable<T>> {
+public class RBTree<T extends Comparable<T>> implements Iterable<T> {
 
   // Constants representing the colors of nodes in the Red-Black Tree
   private static final boolean RED = true;
@@ -15,6 +17,8 @@ public class RBTree<T extends Comparable<T>> {
   // Reference to the root of the Red-Black Tree
   private Node root;
   private int n = 0;
+  // Number of data elements currently stored in the tree
+  private int size = 0;
  /**
    * Private inner class Node representing nodes in the Red-Black Tree.
    * Each node has data, left and right children, a parent, and a color.
@@ -247,11 +251,294 @@ public class RBTree<T extends Comparable<T>> {
 
     // Set the parent of the new node
     newNode.parent = parent;
+    size++;
 
     // Fix Red-Black Tree properties after the insertion
     fixRedBlackPropertiesAfterInsert(newNode);
   }
 
+  /**
+   * Deletes the node with the specified data from the Red-Black Tree and ensures
+   * the Red-Black Tree properties are maintained after the deletion operation.
+   *
+   * @param data The data to be deleted from the Red-Black Tree.
+   * @return true if a node with the given data was found and deleted, false otherwise.
+   */
+  public boolean delete(T data) {
+    Node node = findNode(data);
+    if (node == null) {
+      return false;
+    }
+    deleteNode(node);
+    return true;
+  }
+
+  /**
+   * Returns the smallest data stored in the Red-Black Tree.
+   *
+   * @return The smallest data, or null if the tree is empty.
+   */
+  public T first() {
+    return root == null ? null : minimum(root).data;
+  }
+
+  /**
+   * Deletes the smallest data from the Red-Black Tree and returns it.
+   *
+   * @return The smallest data, or null if the tree is empty.
+   */
+  public T pollFirst() {
+    if (root == null) {
+      return null;
+    }
+    Node node = minimum(root);
+    deleteNode(node);
+    return node.data;
+  }
+
+  /**
+   * Unlinks the given node from the Red-Black Tree. A node with two children is replaced
+   * by its in-order successor, which has at most one child. If a black node was unlinked,
+   * the tree is repaired starting at the child that took its place.
+   *
+   * @param node The node to be removed, must be part of the tree.
+   */
+  private void deleteNode(Node node) {
+    Node removed = node; // The node that is actually unlinked from its position
+    boolean removedColor = removed.color;
+    Node child; // The node moving into the position of the removed node, may be null
+    Node childParent; // The parent of that position, tracked separately since child may be null
+
+    if (node.left == null) {
+      child = node.right;
+      childParent = node.parent;
+      replaceParentsChild(node.parent, node, node.right);
+    } else if (node.right == null) {
+      child = node.left;
+      childParent = node.parent;
+      replaceParentsChild(node.parent, node, node.left);
+    } else {
+      // Node has two children: move its in-order successor into its position
+      removed = minimum(node.right);
+      removedColor = removed.color;
+      child = removed.right;
+      if (removed.parent == node) {
+        childParent = removed;
+      } else {
+        childParent = removed.parent;
+        replaceParentsChild(removed.parent, removed, removed.right);
+        removed.right = node.right;
+        removed.right.parent = removed;
+      }
+      replaceParentsChild(node.parent, node, removed);
+      removed.left = node.left;
+      removed.left.parent = removed;
+      removed.color = node.color;
+    }
+
+    // Detach the deleted node so that it keeps no references into the tree
+    node.left = null;
+    node.right = null;
+    node.parent = null;
+    size--;
+
+    // Removing a black node shortens the black height of one path
+    if (removedColor == BLACK) {
+      fixRedBlackPropertiesAfterDelete(child, childParent);
+    }
+  }
+
+  /**
+   * This method corrects Red-Black Tree properties after the deletion of a black node.
+   * The position of the deleted node carries an extra black, which is either absorbed
+   * by recoloring a red node or moved up the tree, using rotations around the sibling.
+   *
+   * @param node   The node that took the position of the deleted node, may be null.
+   * @param parent The parent of that position.
+   */
+  private void fixRedBlackPropertiesAfterDelete(Node node, Node parent) {
+    while (node != root && colorOf(node) == BLACK) {
+      if (node == parent.left) {
+        Node sibling = parent.right;
+        // Case 1: Sibling is red, rotate to get a black sibling
+        if (sibling.color == RED) {
+          sibling.color = BLACK;
+          parent.color = RED;
+          rotateLeft(parent);
+          sibling = parent.right;
+        }
+        // Case 2: Sibling and both its children are black, move the extra black up
+        if (colorOf(sibling.left) == BLACK && colorOf(sibling.right) == BLACK) {
+          sibling.color = RED;
+          node = parent;
+          parent = node.parent;
+        } else {
+          // Case 3: Sibling's outer child is black, rotate to make it red
+          if (colorOf(sibling.right) == BLACK) {
+            sibling.left.color = BLACK;
+            sibling.color = RED;
+            rotateRight(sibling);
+            sibling = parent.right;
+          }
+          // Case 4: Sibling's outer child is red, rotate the parent and stop
+          sibling.color = parent.color;
+          parent.color = BLACK;
+          sibling.right.color = BLACK;
+          rotateLeft(parent);
+          node = root;
+        }
+      } else {
+        // Symmetric cases for the right child of its parent
+        Node sibling = parent.left;
+        if (sibling.color == RED) {
+          sibling.color = BLACK;
+          parent.color = RED;
+          rotateRight(parent);
+          sibling = parent.left;
+        }
+        if (colorOf(sibling.left) == BLACK && colorOf(sibling.right) == BLACK) {
+          sibling.color = RED;
+          node = parent;
+          parent = node.parent;
+        } else {
+          if (colorOf(sibling.left) == BLACK) {
+            sibling.right.color = BLACK;
+            sibling.color = RED;
+            rotateLeft(sibling);
+            sibling = parent.left;
+          }
+          sibling.color = parent.color;
+          parent.color = BLACK;
+          sibling.left.color = BLACK;
+          rotateRight(parent);
+          node = root;
+        }
+      }
+    }
+    if (node != null) {
+      node.color = BLACK;
+    }
+  }
+
+  /**
+   * Returns the color of the given node, treating null (NIL) leaves as black.
+   *
+   * @param node The node whose color is requested, may be null.
+   * @return The color of the node.
+   */
+  private boolean colorOf(Node node) {
+    return node == null ? BLACK : node.color;
+  }
+
+  /**
+   * Checks whether the specified data is stored in the Red-Black Tree.
+   *
+   * @param data The data to search for.
+   * @return true if a node with the given data exists in the tree, false otherwise.
+   */
+  public boolean contains(T data) {
+    return findNode(data) != null;
+  }
+
+  /**
+   * Returns the number of data elements stored in the Red-Black Tree.
+   *
+   * @return The number of nodes in the tree.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Checks whether the Red-Black Tree contains no data.
+   *
+   * @return true if the tree is empty, false otherwise.
+   */
+  public boolean isEmpty() {
+    return root == null;
+  }
+
+  /**
+   * Searches the tree for the node holding the specified data.
+   *
+   * @param data The data to search for.
+   * @return The node holding the data, or null if the data is not present.
+   */
+  private Node findNode(T data) {
+    Node node = root;
+    while (node != null) {
+      int cmp = data.compareTo(node.data);
+      if (cmp < 0) {
+        node = node.left;
+      } else if (cmp > 0) {
+        node = node.right;
+      } else {
+        return node;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the node holding the smallest data in the subtree rooted at the given node.
+   *
+   * @param node The root of the subtree, must not be null.
+   * @return The leftmost node of the subtree.
+   */
+  private Node minimum(Node node) {
+    while (node.left != null) {
+      node = node.left;
+    }
+    return node;
+  }
+
+  /**
+   * Returns the in-order successor of the given node by following parent pointers,
+   * so that a full traversal needs no recursion and no auxiliary stack.
+   *
+   * @param node The node whose successor is requested, must not be null.
+   * @return The node holding the next larger data, or null if the node is the largest.
+   */
+  private Node successor(Node node) {
+    if (node.right != null) {
+      return minimum(node.right);
+    }
+    Node parent = node.parent;
+    while (parent != null && node == parent.right) {
+      node = parent;
+      parent = parent.parent;
+    }
+    return parent;
+  }
+
+  /**
+   * Returns an iterator over the data of the Red-Black Tree in ascending order.
+   * The iterator does not support removal and must not be used while the tree is modified.
+   *
+   * @return An in-order iterator over the stored data.
+   */
+  @Override
+  public Iterator<T> iterator() {
+    return new Iterator<T>() {
+      private Node next = root == null ? null : minimum(root);
+
+      @Override
+      public boolean hasNext() {
+        return next != null;
+      }
+
+      @Override
+      public T next() {
+        if (next == null) {
+          throw new NoSuchElementException();
+        }
+        T data = next.data;
+        next = successor(next);
+        return data;
+      }
+    };
+  }
+
   /**
    * Generates and writes a DOT file representation of the Red-Black Tree to the specified file.
    * The DOT file can be visualized using Graphviz tools to illustrate the structure of the tree.
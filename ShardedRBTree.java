@@ -0,0 +1,486 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Ordered set that splits the key space into range partitions, each backed by an independent
+ * Red-Black Tree. Because the shards never share nodes, batch inserts can be routed to the shards
+ * and applied in parallel on a ForkJoinPool, one task per shard.
+ *
+ * <p>Shard i holds the data d with splitter[i - 1] &lt;= d &lt; splitter[i], so iterating the
+ * shards in order and each shard in order yields all data in ascending order. The splitters are
+ * taken from a sample of the key distribution, either from the first batch inserted (together
+ * with any data inserted one by one before it) or by calling {@link #rebalance()}.
+ *
+ * <p>Single-element operations take no shared lock: they route on the current layout of
+ * shards and splitters and then only hold the monitor of their shard, so operations on
+ * different shards never contend. rebalance() retires every shard under its monitor before
+ * publishing a new layout; an operation that finds its shard retired waits for the new
+ * layout and routes again.
+ *
+ * @param <T> The type of data stored in the sharded tree, must extend Comparable.
+ */
+public class ShardedRBTree<T extends Comparable<T>> implements Iterable<T> {
+
+  // Number of sampled keys per shard used to estimate the shard boundaries
+  private static final int SAMPLES_PER_SHARD = 64;
+
+  private final int shardCount;
+  private final ForkJoinPool pool;
+
+  // Shards and the boundaries between them; replaced as a whole when the splitters change
+  private volatile Layout<T> layout;
+
+  // Batch operations hold the read lock, rebalance and the bootstrap hold the write lock.
+  // Single-element operations only use it to wait for a rebalance to finish.
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * Constructs an empty sharded tree that runs batch inserts on the common ForkJoinPool.
+   *
+   * @param shardCount The number of range partitions, must be at least 1.
+   */
+  public ShardedRBTree(int shardCount) {
+    this(shardCount, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Constructs an empty sharded tree that runs batch inserts on the given pool.
+   *
+   * @param shardCount The number of range partitions, must be at least 1.
+   * @param pool       The pool on which the per-shard insert tasks are executed.
+   * @throws IllegalArgumentException If shardCount is smaller than 1.
+   */
+  public ShardedRBTree(int shardCount, ForkJoinPool pool) {
+    if (shardCount < 1) {
+      throw new IllegalArgumentException("Shard count must be at least 1: " + shardCount);
+    }
+    this.shardCount = shardCount;
+    this.pool = pool;
+    this.layout = new Layout<>(newShards(), new ArrayList<>());
+  }
+
+  /**
+   * Inserts a single data element into the shard responsible for its key range.
+   *
+   * @param data The data to be inserted.
+   * @throws IllegalArgumentException If the data is already present in the tree.
+   */
+  public void insert(T data) {
+    withShard(data, tree -> {
+      tree.insert(data);
+      return null;
+    });
+  }
+
+  /**
+   * Inserts a single data element unless it is already present. Unlike insert, a duplicate
+   * is reported by the return value instead of an exception, which keeps concurrent
+   * workloads with overlapping keys cheap.
+   *
+   * @param data The data to be inserted.
+   * @return true if the data was inserted, false if it was already present.
+   */
+  public boolean add(T data) {
+    return withShard(data, tree -> {
+      if (tree.contains(data)) {
+        return false;
+      }
+      tree.insert(data);
+      return true;
+    });
+  }
+
+  /**
+   * Deletes a single data element from the shard responsible for its key range.
+   *
+   * @param data The data to be deleted.
+   * @return true if the data was found and deleted, false otherwise.
+   */
+  public boolean delete(T data) {
+    return withShard(data, tree -> tree.delete(data));
+  }
+
+  /**
+   * Inserts a batch of data. The batch is partitioned by key range and every non-empty
+   * partition is inserted into its shard by a separate task on the ForkJoinPool.
+   * If the tree has no shard boundaries yet, the boundaries are first estimated from a
+   * random sample of the batch and of the data inserted so far.
+   *
+   * @param batch The data to be inserted.
+   * @throws IllegalArgumentException If the batch contains data already present in the tree
+   *                                  or the same data twice. Partitions of other shards may
+   *                                  already have been inserted when this is thrown.
+   */
+  public void insertAll(Collection<? extends T> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    if (layout.splitters.isEmpty() && shardCount > 1) {
+      bootstrapSplitters(batch);
+    }
+
+    lock.readLock().lock();
+    try {
+      // The layout cannot change while the read lock is held
+      Layout<T> current = layout;
+      // Route every element to the partition of its shard
+      List<List<T>> partitions = new ArrayList<>(shardCount);
+      for (int i = 0; i < shardCount; i++) {
+        partitions.add(new ArrayList<>());
+      }
+      for (T data : batch) {
+        partitions.get(current.shardFor(data)).add(data);
+      }
+
+      // Insert every partition into its shard in parallel, one task per shard
+      List<ForkJoinTask<?>> tasks = new ArrayList<>(shardCount);
+      for (int i = 0; i < shardCount; i++) {
+        List<T> partition = partitions.get(i);
+        if (!partition.isEmpty()) {
+          Shard<T> shard = current.shards.get(i);
+          tasks.add(pool.submit(() -> insertInto(shard, partition)));
+        }
+      }
+      // join() rethrows the IllegalArgumentException of a duplicate insert
+      for (ForkJoinTask<?> task : tasks) {
+        task.join();
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Checks whether the specified data is stored in the sharded tree.
+   *
+   * @param data The data to search for.
+   * @return true if the data is present, false otherwise.
+   */
+  public boolean contains(T data) {
+    return withShard(data, tree -> tree.contains(data));
+  }
+
+  /**
+   * Returns the number of data elements stored in all shards.
+   *
+   * @return The total number of elements.
+   */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      int total = 0;
+      for (Shard<T> shard : layout.shards) {
+        synchronized (shard) {
+          total += shard.tree.size();
+        }
+      }
+      return total;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the number of data elements stored in each shard, in key order.
+   * Useful to check how evenly the current boundaries split the data.
+   *
+   * @return The per-shard sizes.
+   */
+  public int[] shardSizes() {
+    lock.readLock().lock();
+    try {
+      int[] sizes = new int[shardCount];
+      List<Shard<T>> shards = layout.shards;
+      for (int i = 0; i < shardCount; i++) {
+        Shard<T> shard = shards.get(i);
+        synchronized (shard) {
+          sizes[i] = shard.tree.size();
+        }
+      }
+      return sizes;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Recomputes the shard boundaries from a sample of the stored data and redistributes
+   * all data over new shards, so that each shard holds roughly the same number of elements.
+   * The new shards are built in parallel. Blocks all inserts while running.
+   */
+  public void rebalance() {
+    lock.writeLock().lock();
+    try {
+      if (shardCount == 1) {
+        return;
+      }
+      Layout<T> old = layout;
+      retire(old);
+      int total = 0;
+      for (Shard<T> shard : old.shards) {
+        total += shard.tree.size();
+      }
+      if (total == 0) {
+        redistribute(old, old.splitters);
+        return;
+      }
+
+      // Take every stride-th element of the ordered data as the sample
+      int stride = Math.max(1, total / (shardCount * SAMPLES_PER_SHARD));
+      List<T> sample = new ArrayList<>();
+      int position = 0;
+      for (Shard<T> shard : old.shards) {
+        for (T data : shard.tree) {
+          if (position++ % stride == 0) {
+            sample.add(data);
+          }
+        }
+      }
+      redistribute(old, splittersFrom(sample));
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Returns an iterator over all data in ascending order. Since the shards partition the key
+   * space by range, the ordered merge of the shards is their concatenation.
+   * The iterator must not be used while the tree is modified.
+   *
+   * @return An in-order iterator over the data of all shards.
+   */
+  @Override
+  public Iterator<T> iterator() {
+    List<Shard<T>> current = layout.shards;
+    return new Iterator<T>() {
+      private int shardIndex = 0;
+      private Iterator<T> inner = current.get(0).tree.iterator();
+
+      @Override
+      public boolean hasNext() {
+        while (!inner.hasNext() && shardIndex + 1 < current.size()) {
+          inner = current.get(++shardIndex).tree.iterator();
+        }
+        return inner.hasNext();
+      }
+
+      @Override
+      public T next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return inner.next();
+      }
+    };
+  }
+
+  /**
+   * Inserts a partition into its shard while holding the shard's monitor.
+   *
+   * @param shard     The shard receiving the data.
+   * @param partition The data routed to this shard.
+   */
+  private static <T extends Comparable<T>> void insertInto(Shard<T> shard, List<T> partition) {
+    synchronized (shard) {
+      for (T data : partition) {
+        shard.tree.insert(data);
+      }
+    }
+  }
+
+  /**
+   * Applies an operation to the shard responsible for the data while holding the shard's
+   * monitor. If the shard has been retired by a concurrent rebalance, waits until the new
+   * layout is published and routes the data again.
+   *
+   * @param data      The data determining the shard.
+   * @param operation The operation to apply to the shard's tree.
+   * @return The result of the operation.
+   */
+  private <R> R withShard(T data, Function<RBTree<T>, R> operation) {
+    while (true) {
+      Layout<T> current = layout;
+      Shard<T> shard = current.shards.get(current.shardFor(data));
+      synchronized (shard) {
+        if (!shard.retired) {
+          return operation.apply(shard.tree);
+        }
+      }
+      // The write lock is held until the new layout is published
+      lock.readLock().lock();
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Takes all shards of a layout out of service. Once this returns, no other thread modifies
+   * the shards' trees, so they can be read without holding their monitors.
+   * Must be called while holding the write lock.
+   *
+   * @param old The layout whose shards are retired.
+   */
+  private static <T extends Comparable<T>> void retire(Layout<T> old) {
+    for (Shard<T> shard : old.shards) {
+      synchronized (shard) {
+        shard.retired = true;
+      }
+    }
+  }
+
+  /**
+   * Moves the data of a retired layout into new shards split at the given boundaries and
+   * publishes them as the current layout. The new shards are filled in parallel.
+   * Must be called while holding the write lock.
+   *
+   * @param old          The retired layout holding the data.
+   * @param newSplitters The boundaries of the new shards.
+   */
+  private void redistribute(Layout<T> old, List<T> newSplitters) {
+    Layout<T> next = new Layout<>(newShards(), newSplitters);
+
+    // Route the old data to the new partitions; the data arrives in ascending order
+    List<List<T>> partitions = new ArrayList<>(shardCount);
+    for (int i = 0; i < shardCount; i++) {
+      partitions.add(new ArrayList<>());
+    }
+    for (Shard<T> oldShard : old.shards) {
+      for (T data : oldShard.tree) {
+        partitions.get(next.shardFor(data)).add(data);
+      }
+    }
+    List<ForkJoinTask<?>> tasks = new ArrayList<>(shardCount);
+    for (int i = 0; i < shardCount; i++) {
+      List<T> partition = partitions.get(i);
+      if (!partition.isEmpty()) {
+        Shard<T> shard = next.shards.get(i);
+        tasks.add(pool.submit(() -> insertInto(shard, partition)));
+      }
+    }
+    for (ForkJoinTask<?> task : tasks) {
+      task.join();
+    }
+    layout = next;
+  }
+
+  /**
+   * Estimates the shard boundaries from a random sample of the first batch together with the
+   * data already inserted one by one, and moves that data to the shards of the new boundaries.
+   *
+   * @param batch The batch about to be inserted.
+   */
+  private void bootstrapSplitters(Collection<? extends T> batch) {
+    lock.writeLock().lock();
+    try {
+      // Another thread may have set the boundaries in the meantime
+      Layout<T> old = layout;
+      if (!old.splitters.isEmpty()) {
+        return;
+      }
+      // Freeze the existing data so that it can be sampled and moved without the monitors
+      retire(old);
+      List<T> all = new ArrayList<>(batch);
+      for (Shard<T> shard : old.shards) {
+        for (T data : shard.tree) {
+          all.add(data);
+        }
+      }
+      int sampleSize = Math.min(all.size(), shardCount * SAMPLES_PER_SHARD);
+      Random random = new Random();
+      // Partial Fisher-Yates shuffle: the first sampleSize elements become a uniform sample
+      for (int i = 0; i < sampleSize; i++) {
+        Collections.swap(all, i, i + random.nextInt(all.size() - i));
+      }
+      List<T> sample = new ArrayList<>(all.subList(0, sampleSize));
+      Collections.sort(sample);
+      // The sample is never empty, so at least one splitter results and this runs only once
+      redistribute(old, splittersFrom(sample));
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Picks shardCount - 1 evenly spaced quantiles of a sorted sample as shard boundaries.
+   * Equal quantiles are dropped, so a heavily skewed sample may yield fewer boundaries,
+   * in which case the last shards stay empty.
+   *
+   * @param sortedSample The sample in ascending order, must not be empty.
+   * @return The strictly increasing list of splitters.
+   */
+  private List<T> splittersFrom(List<T> sortedSample) {
+    List<T> result = new ArrayList<>(shardCount - 1);
+    for (int i = 1; i < shardCount; i++) {
+      T candidate = sortedSample.get((int) ((long) i * sortedSample.size() / shardCount));
+      if (result.isEmpty() || candidate.compareTo(result.get(result.size() - 1)) > 0) {
+        result.add(candidate);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Creates shardCount empty shards.
+   *
+   * @return The list of new shards.
+   */
+  private List<Shard<T>> newShards() {
+    List<Shard<T>> result = new ArrayList<>(shardCount);
+    for (int i = 0; i < shardCount; i++) {
+      result.add(new Shard<>());
+    }
+    return result;
+  }
+
+  /**
+   * A Red-Black Tree together with the flag that takes it out of service. Both are guarded
+   * by the monitor of the shard.
+   */
+  private static final class Shard<T extends Comparable<T>> {
+    final RBTree<T> tree = new RBTree<>();
+    boolean retired = false;
+  }
+
+  /**
+   * Immutable pairing of the shards with the boundaries between them, so that a reader never
+   * routes with the splitters of one layout into the shards of another.
+   */
+  private static final class Layout<T extends Comparable<T>> {
+    final List<Shard<T>> shards;
+    final List<T> splitters;
+
+    Layout(List<Shard<T>> shards, List<T> splitters) {
+      this.shards = shards;
+      this.splitters = splitters;
+    }
+
+    /**
+     * Determines the shard responsible for the given data by binary search over the splitters.
+     *
+     * @param data The data to route.
+     * @return The index of the shard, i.e. the number of splitters less than or equal to the data.
+     */
+    int shardFor(T data) {
+      int low = 0;
+      int high = splitters.size();
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (data.compareTo(splitters.get(mid)) < 0) {
+          high = mid;
+        } else {
+          low = mid + 1;
+        }
+      }
+      return low;
+    }
+  }
+}
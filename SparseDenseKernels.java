@@ -0,0 +1,188 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Kernels combining a SparseVector with a dense double[] (for example model weights):
+ * sparse-dense dot product, sparse-into-dense axpy and extraction of the dense values
+ * selected by a sparse mask. They work on the primitive index/value arrays exported by
+ * SparseVector instead of walking its linked list.
+ *
+ * At class initialization the kernels choose between a SIMD implementation based on the
+ * gather/scatter operations of the Java Vector API and a scalar fallback. The SIMD version
+ * is used if the jdk.incubator.vector module is present (run with
+ * --add-modules jdk.incubator.vector), the hardware offers at least two double lanes and the
+ * system property "sparse.kernels.scalar" is not set to true. VectorizedSparseDenseKernels is
+ * only reached through method handles looked up in that case, so this class and its callers
+ * compile and run without the incubator module, and the tree builds even if
+ * VectorizedSparseDenseKernels is left out.
+ * Vectors with fewer than SIMD_THRESHOLD non-zero elements always take the scalar loop.
+ */
+public class SparseDenseKernels {
+	// Static entry points of VectorizedSparseDenseKernels, or null if the scalar fallback is used.
+	// Being static final, the handles are constants for the JIT and inline like direct calls.
+	private static final MethodHandle SIMD_DOT;
+	private static final MethodHandle SIMD_AXPY;
+	private static final MethodHandle SIMD_GATHER;
+	// True if the Vector API implementation was selected
+	private static final boolean VECTORIZED;
+	// Below this number of non-zero elements the scalar loop is at least as fast
+	private static final int SIMD_THRESHOLD = 64;
+
+	static {
+		MethodHandle dot = null;
+		MethodHandle axpy = null;
+		MethodHandle gather = null;
+		if (!Boolean.getBoolean("sparse.kernels.scalar")
+				&& ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+			try {
+				Class<?> simd = Class.forName("VectorizedSparseDenseKernels");
+				MethodHandles.Lookup lookup = MethodHandles.lookup();
+				MethodHandle supported = lookup.findStatic(simd, "isSupported", MethodType.methodType(boolean.class));
+				if ((boolean) supported.invokeExact()) {
+					dot = lookup.findStatic(simd, "dot",
+							MethodType.methodType(double.class, int[].class, double[].class, double[].class));
+					axpy = lookup.findStatic(simd, "axpy",
+							MethodType.methodType(void.class, double.class, int[].class, double[].class, double[].class));
+					gather = lookup.findStatic(simd, "gather",
+							MethodType.methodType(void.class, double[].class, int[].class, double[].class));
+				}
+			} catch (Throwable e) {
+				// The SIMD class was not compiled or cannot be linked: use the scalar fallback
+				dot = null;
+				axpy = null;
+				gather = null;
+			}
+		}
+		SIMD_DOT = dot;
+		SIMD_AXPY = axpy;
+		SIMD_GATHER = gather;
+		VECTORIZED = gather != null;
+	}
+
+	private SparseDenseKernels() {
+	}
+
+	// Returns true if the Vector API implementation is used
+	public static boolean isVectorized() {
+		return VECTORIZED;
+	}
+
+	/**
+	 * Computes the dot product of a sparse vector and a dense array.
+	 *
+	 * @param sparse The sparse vector.
+	 * @param dense  The dense array, at least as long as the sparse vector.
+	 * @return The sum of sparse[i] * dense[i] over the non-zero elements.
+	 */
+	public static double dot(SparseVector sparse, double[] dense) {
+		checkLength(sparse, dense);
+		return VECTORIZED && sparse.getNonZeroCount() >= SIMD_THRESHOLD
+				? simdDot(sparse.indexArray(), sparse.valueArray(), dense)
+				: scalarDot(sparse.indexArray(), sparse.valueArray(), dense);
+	}
+
+	/**
+	 * Adds a scaled sparse vector into a dense array: dense[i] += alpha * sparse[i].
+	 *
+	 * @param alpha  The factor applied to the sparse values.
+	 * @param sparse The sparse vector.
+	 * @param dense  The dense array that is updated, at least as long as the sparse vector.
+	 */
+	public static void axpy(double alpha, SparseVector sparse, double[] dense) {
+		checkLength(sparse, dense);
+		if (VECTORIZED && sparse.getNonZeroCount() >= SIMD_THRESHOLD) {
+			simdAxpy(alpha, sparse.indexArray(), sparse.valueArray(), dense);
+		} else {
+			scalarAxpy(alpha, sparse.indexArray(), sparse.valueArray(), dense);
+		}
+	}
+
+	/**
+	 * Extracts the dense values at the non-zero indices of a mask into a new sparse vector.
+	 *
+	 * @param dense The dense array to read from, at least as long as the mask.
+	 * @param mask  The sparse vector whose non-zero indices select the values.
+	 * @return A new SparseVector holding dense[i] for every non-zero index i of the mask.
+	 */
+	public static SparseVector extract(double[] dense, SparseVector mask) {
+		checkLength(mask, dense);
+		int[] indices = mask.indexArray();
+		double[] values = new double[indices.length];
+		if (VECTORIZED && indices.length >= SIMD_THRESHOLD) {
+			simdGather(dense, indices, values);
+		} else {
+			scalarGather(dense, indices, values);
+		}
+		return SparseVector.fromSortedArrays(mask.getLength(), indices, values, indices.length);
+	}
+
+	// SIMD dot product over index/value arrays; only valid if isVectorized() returns true
+	static double simdDot(int[] indices, double[] values, double[] dense) {
+		try {
+			return (double) SIMD_DOT.invokeExact(indices, values, dense);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	// SIMD dense[indices[i]] += alpha * values[i]; only valid if isVectorized() returns true
+	static void simdAxpy(double alpha, int[] indices, double[] values, double[] dense) {
+		try {
+			SIMD_AXPY.invokeExact(alpha, indices, values, dense);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	// SIMD values[i] = dense[indices[i]]; only valid if isVectorized() returns true
+	static void simdGather(double[] dense, int[] indices, double[] values) {
+		try {
+			SIMD_GATHER.invokeExact(dense, indices, values);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	// Scalar dot product over index/value arrays
+	static double scalarDot(int[] indices, double[] values, double[] dense) {
+		double sum = 0.0;
+		for (int i = 0; i < indices.length; i++) {
+			sum += values[i] * dense[indices[i]];
+		}
+		return sum;
+	}
+
+	// Scalar dense[indices[i]] += alpha * values[i]
+	static void scalarAxpy(double alpha, int[] indices, double[] values, double[] dense) {
+		for (int i = 0; i < indices.length; i++) {
+			dense[indices[i]] += alpha * values[i];
+		}
+	}
+
+	// Scalar values[i] = dense[indices[i]]
+	static void scalarGather(double[] dense, int[] indices, double[] values) {
+		for (int i = 0; i < indices.length; i++) {
+			values[i] = dense[indices[i]];
+		}
+	}
+
+	// The SIMD kernels only throw unchecked exceptions, which are passed on unchanged
+	private static RuntimeException rethrow(Throwable e) {
+		if (e instanceof RuntimeException) {
+			return (RuntimeException) e;
+		}
+		if (e instanceof Error) {
+			throw (Error) e;
+		}
+		return new IllegalStateException(e);
+	}
+
+	// The indices of a sparse vector are below its length, so a long enough dense
+	// array makes every gather and scatter in bounds
+	private static void checkLength(SparseVector sparse, double[] dense) {
+		if (dense.length < sparse.getLength()) {
+			throw new IllegalArgumentException("Error: Vector lengths are not the same");
+		}
+	}
+}
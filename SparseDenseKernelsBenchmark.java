@@ -0,0 +1,119 @@
+import java.util.Random;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Compares the Vector API kernels of SparseDenseKernels with their scalar versions for
+ * varying numbers of non-zero elements and dense array sizes. Small arrays fit into the
+ * caches, large arrays make every gather a cache miss.
+ *
+ * <p>Each sample times a batch of calls, at least BATCH_ELEMENTS non-zero elements long, and
+ * divides by the number of calls, so small vectors are not measured below the resolution of
+ * System.nanoTime(). Every timed kernel returns a value that is added to a checksum printed at the end, so the
+ * JIT cannot drop any of the work, and the SIMD dot product is checked against the scalar one.
+ *
+ * <p>Usage: java --add-modules jdk.incubator.vector SparseDenseKernelsBenchmark
+ */
+public class SparseDenseKernelsBenchmark {
+	// Minimum number of non-zero elements processed per timed sample
+	private static final int BATCH_ELEMENTS = 1 << 14;
+	// Sum of all kernel results, printed so that the JIT has to compute them
+	private static double checksum = 0.0;
+
+	public static void main(String[] args) {
+		if (!SparseDenseKernels.isVectorized()) {
+			System.out.println("Vector API not available, run with --add-modules jdk.incubator.vector");
+			return;
+		}
+		Random random = new Random(42);
+		System.out.printf("%10s %10s %8s %12s %12s %8s%n", "dense", "nnz", "kernel", "scalar ns", "simd ns", "speedup");
+		for (int denseLength : new int[] {1 << 12, 1 << 16, 1 << 20, 1 << 24}) {
+			double[] dense = new double[denseLength];
+			for (int i = 0; i < denseLength; i++) {
+				dense[i] = random.nextDouble();
+			}
+			for (int nonZeros : new int[] {16, 64, 256, 4096, 65536}) {
+				if (nonZeros > denseLength / 4) {
+					continue;
+				}
+				int[] indices = randomIndices(denseLength, nonZeros, random);
+				double[] values = new double[nonZeros];
+				for (int i = 0; i < nonZeros; i++) {
+					values[i] = random.nextDouble();
+				}
+				double[] gathered = new double[nonZeros];
+				int batch = Math.max(1, BATCH_ELEMENTS / nonZeros);
+				int samples = Math.max(100, 20_000_000 / (nonZeros * batch));
+
+				double expected = SparseDenseKernels.scalarDot(indices, values, dense);
+				double actual = SparseDenseKernels.simdDot(indices, values, dense);
+				if (Math.abs(expected - actual) > 1e-9 * Math.abs(expected)) {
+					throw new IllegalStateException("SIMD dot " + actual + " differs from scalar dot " + expected);
+				}
+
+				long scalar = best(samples, batch, () -> SparseDenseKernels.scalarDot(indices, values, dense));
+				long simd = best(samples, batch, () -> SparseDenseKernels.simdDot(indices, values, dense));
+				print(denseLength, nonZeros, "dot", scalar, simd);
+				scalar = best(samples, batch, () -> {
+					SparseDenseKernels.scalarAxpy(1e-9, indices, values, dense);
+					return dense[indices[nonZeros - 1]];
+				});
+				simd = best(samples, batch, () -> {
+					SparseDenseKernels.simdAxpy(1e-9, indices, values, dense);
+					return dense[indices[nonZeros - 1]];
+				});
+				print(denseLength, nonZeros, "axpy", scalar, simd);
+				scalar = best(samples, batch, () -> {
+					SparseDenseKernels.scalarGather(dense, indices, gathered);
+					return gathered[nonZeros - 1];
+				});
+				simd = best(samples, batch, () -> {
+					SparseDenseKernels.simdGather(dense, indices, gathered);
+					return gathered[nonZeros - 1];
+				});
+				print(denseLength, nonZeros, "extract", scalar, simd);
+			}
+		}
+		System.out.println("checksum " + checksum);
+	}
+
+	// Times samples batches of batch calls and returns the best time of a single call in
+	// nanoseconds, i.e. the fastest batch divided by its number of calls
+	private static long best(int samples, int batch, DoubleSupplier kernel) {
+		long best = Long.MAX_VALUE;
+		double sum = 0.0;
+		for (int sample = 0; sample < samples; sample++) {
+			long start = System.nanoTime();
+			for (int call = 0; call < batch; call++) {
+				sum += kernel.getAsDouble();
+			}
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		checksum += sum;
+		return best / batch;
+	}
+
+	private static void print(int denseLength, int nonZeros, String kernel, long scalar, long simd) {
+		System.out.printf("%10d %10d %8s %12d %12d %7.2fx%n", denseLength, nonZeros, kernel, scalar, simd,
+				(double) scalar / Math.max(1, simd));
+	}
+
+	// Returns count distinct random indices in [0, length) in ascending order
+	private static int[] randomIndices(int length, int count, Random random) {
+		boolean[] used = new boolean[length];
+		int[] indices = new int[count];
+		for (int placed = 0; placed < count;) {
+			int index = random.nextInt(length);
+			if (!used[index]) {
+				used[index] = true;
+				placed++;
+			}
+		}
+		int i = 0;
+		for (int index = 0; index < length; index++) {
+			if (used[index]) {
+				indices[i++] = index;
+			}
+		}
+		return indices;
+	}
+}
@@ -1,8 +1,23 @@
+import java.util.Arrays;
 
 public class SparseVector {
+	// Intersections switch from a linear merge to galloping search once the larger
+	// vector has at least this many times more non-zero elements than the smaller one
+	private static final int GALLOP_RATIO = 8;
+
 	private int length;
 	// The first node in the list (is an element)
 	private Node head; 
+	// Number of stored (non-zero) elements
+	private int nonZeros;
+	// Sum of elementHash over all stored elements, updated in O(1) by every modification
+	private long fingerprint;
+	// Incremented on every modification, used to invalidate the cached arrays
+	private int modCount;
+	// Index and value arrays of the elements, rebuilt lazily after a modification
+	private ArrayView cachedArrays;
+	// Set by markReadOnly(); every modification then throws
+	private boolean readOnly;
 
 	// A empty constructor allows the creation of empty objects
 	public SparseVector() {
@@ -12,6 +27,20 @@ public class SparseVector {
 		length = n;
 	}
 
+	// Index and value arrays of the elements at one modification count. All fields are
+	// final, so threads that only read the vector can share the cache safely
+	private static final class ArrayView {
+		private final int modCount;
+		private final int[] indices;
+		private final double[] values;
+
+		ArrayView(int modCount, int[] indices, double[] values) {
+			this.modCount = modCount;
+			this.indices = indices;
+			this.values = values;
+		}
+	}
+
 	// Node in the linked list
 	private static class Node {
 		// Value and index of the element
@@ -41,6 +70,7 @@ public class SparseVector {
 	 */
 
 	public void setElement(int index, double value) {
+		checkWritable();
 
 		// If the specified index is invalid (less than 0 or
 		// greater than or equal to the length
@@ -59,7 +89,9 @@ public class SparseVector {
 				Node newNode = new Node(index, value);
 				newNode.next = head;
 				head = newNode;
-				length++;
+				nonZeros++;
+				fingerprint += elementHash(index, value);
+				modCount++;
 			} else {
 
 				// Traverse the Sparse vector to find the correct
@@ -71,7 +103,9 @@ public class SparseVector {
 					// If the index already exists, update the
 					// existing node's value
 					if (index == current.index) {
+						fingerprint += elementHash(index, value) - elementHash(index, current.value);
 						current.value = value;
+						modCount++;
 						return;
 
 					} else if (index > current.index) {
@@ -82,7 +116,9 @@ public class SparseVector {
 							Node newNode = new Node(index, value);
 							newNode.next = current.next;
 							current.next = newNode;
-							length++;
+							nonZeros++;
+							fingerprint += elementHash(index, value);
+							modCount++;
 							return;
 						}
 						// Move to the next node in the Sparse Vector
@@ -94,7 +130,9 @@ public class SparseVector {
 				// or equal to last index of the Sparse vector
 				if (index == current.index) {
 					// Update the value if the index already exists
+					fingerprint += elementHash(index, value) - elementHash(index, current.value);
 					current.value = value;
+					modCount++;
 				} else {
 
 					// Create a new node and add it at the end of the
@@ -102,7 +140,9 @@ public class SparseVector {
 					Node newNode = new Node(index, value);
 					current.next = newNode;
 					newNode.next = null;
-					length++;
+					nonZeros++;
+					fingerprint += elementHash(index, value);
+					modCount++;
 				}
 			}
 		}
@@ -136,6 +176,7 @@ public class SparseVector {
 	// removeElement -> enables the removal of an element at a specific position in
 	// the sparse vector
 	public void removeElement(int index) {
+		checkWritable();
 		// Checks if the passed index is in the valid range
 		// If the index is negative or equal to/greater than the length of the vector,
 		// "invalid index" is printed on the console
@@ -149,7 +190,10 @@ public class SparseVector {
 		// If the index to be removed is the index of the first element,
 		// the head is moved to the next element, effectively removing the first element
 		if (head.index == index) {
+			fingerprint -= elementHash(head.index, head.value);
 			head = head.next;
+			nonZeros--;
+			modCount++;
 			return;
 		}
 
@@ -164,7 +208,34 @@ public class SparseVector {
 		// If the next element of the current element has the index to be removed,
 		// the next element is updated so that it skips the element to be removed
 		if (current.next != null && current.next.index == index) {
+			fingerprint -= elementHash(current.next.index, current.next.value);
 			current.next = current.next.next;
+			nonZeros--;
+			modCount++;
+		}
+	}
+
+	// Returns true if the vector rejects all modifications
+	public boolean isReadOnly() {
+		return this.readOnly;
+	}
+
+	/**
+	 * Makes this vector read-only: setElement, removeElement and add throw an
+	 * UnsupportedOperationException from now on. Used for vectors that are handed out as
+	 * immutable results, such as the snapshots of ConcurrentSparseAccumulator.
+	 *
+	 * @return This vector.
+	 */
+	SparseVector markReadOnly() {
+		this.readOnly = true;
+		return this;
+	}
+
+	// Throws if the vector has been made read-only
+	private void checkWritable() {
+		if (readOnly) {
+			throw new UnsupportedOperationException("Error: Vector is read-only");
 		}
 	}
 
@@ -173,13 +244,27 @@ public class SparseVector {
 		return this.length;
 	}
 
+	// Returns the number of stored (non-zero) elements of the sparse vector
+	public int getNonZeroCount() {
+		return this.nonZeros;
+	}
+
 	// equals -> checks if two sparse vectors are equal by comparing their lengths
 	// and then verifying the indices and values of the elements in both vectors
 	public boolean equals(SparseVector other) {
+		if (this == other) {
+			return true;
+		}
 		// Checks if the lengths of the two sparse vectors (this and other) are
 		// different
 		// If they are, the vectors are not equal, and it returns false
-		if (this.length != other.length) {
+		if (other == null || this.length != other.length) {
+			return false;
+		}
+
+		// Vectors with a different number of elements or a different fingerprint
+		// cannot be equal, which rejects almost all unequal vectors in O(1)
+		if (this.nonZeros != other.nonZeros || this.fingerprint != other.fingerprint) {
 			return false;
 		}
 
@@ -207,6 +292,47 @@ public class SparseVector {
 		return current1 == null && current2 == null;
 	}
 
+	// Overrides Object.equals so that sparse vectors can be used in hash based collections
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof SparseVector && equals((SparseVector) other);
+	}
+
+	/**
+	 * Returns a hash code derived from the length and the fingerprint of the elements.
+	 * The fingerprint is maintained incrementally by every modification, so this takes O(1).
+	 * A vector used as key of a hash based collection must not be modified afterwards.
+	 *
+	 * @return The hash code of the vector.
+	 */
+	@Override
+	public int hashCode() {
+		long h = fingerprint * 31 + length;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * Returns the 64-bit fingerprint of the elements: the sum of a mixed hash of every
+	 * (index, value) pair. Equal vectors have equal fingerprints. Since the sum does not
+	 * depend on the order of the elements, a modification updates it in O(1) by
+	 * subtracting the hash of the old element and adding the hash of the new one.
+	 *
+	 * @return The fingerprint of the elements.
+	 */
+	public long fingerprint() {
+		return fingerprint;
+	}
+
+	// Hash of a single element; 0.0 and -0.0 compare equal, so they hash equally
+	private static long elementHash(int index, double value) {
+		long bits = value == 0.0 ? 0L : Double.doubleToLongBits(value);
+		long h = bits * 0x9E3779B97F4A7C15L + index;
+		// Finalizer of SplitMix64 to spread every input bit over the whole hash
+		h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+		return h ^ (h >>> 31);
+	}
+
 	/**
 	 * Adds the elements of another SparseVector to the current SparseVector. If the
 	 * current SparseVector is empty, it copies the elements from the other
@@ -221,6 +347,7 @@ public class SparseVector {
 	 */
 	
 	void add(SparseVector other) {
+	    checkWritable();
 	    // Addition of Sparse Vectors whose lengths are different is not possible
 	    if (this.length != other.length) {
 	        // throw new RuntimeException("Error: Vector lengths are not the same");
@@ -228,10 +355,10 @@ public class SparseVector {
 	        // For simplicity, I've commented it out, but you may want to include it based on your requirements.
 	    }
 
-	    // If the current SparseVector is empty, copy the elements from the other SparseVector
-	    if (this.head == null) {
-	        this.head = other.head;
-	    }
+	    // If the current SparseVector is empty, the loop below copies every element of the
+	    // other SparseVector into new nodes (sharing the other's nodes would let later
+	    // changes of one vector leak into the other)
+	    modCount++;
 
 	    // Initialize iterators for the current and other SparseVectors
 	    Node thisCurr = this.head;
@@ -242,8 +369,20 @@ public class SparseVector {
 	    while (otherCurr != null) {
 	        // If the indices of the current and other SparseVectors match, sum their values
 	        if (thisCurr != null && thisCurr.index == otherCurr.index) {
+	            fingerprint -= elementHash(thisCurr.index, thisCurr.value);
 	            thisCurr.value += otherCurr.value;
-	            prev = thisCurr;
+	            if (thisCurr.value == 0.0) {
+	                // The values cancel out: unlink the node, since only non-zero values are stored
+	                if (prev == null) {
+	                    this.head = thisCurr.next;
+	                } else {
+	                    prev.next = thisCurr.next;
+	                }
+	                nonZeros--;
+	            } else {
+	                fingerprint += elementHash(thisCurr.index, thisCurr.value);
+	                prev = thisCurr;
+	            }
 	            thisCurr = thisCurr.next;
 	            otherCurr = otherCurr.next;
 
@@ -258,6 +397,8 @@ public class SparseVector {
 	                prev.next = newNode;
 	            }
 	            prev = newNode;
+	            nonZeros++;
+	            fingerprint += elementHash(newNode.index, newNode.value);
 	            otherCurr = otherCurr.next;
 
 	        } else {
@@ -270,6 +411,238 @@ public class SparseVector {
 	    }
 	}
 
+
+	/**
+	 * Returns the indices of all elements that are non-zero in both this vector and
+	 * the other vector, in ascending order.
+	 *
+	 * @param other The vector to intersect with.
+	 * @return The common indices.
+	 */
+	public int[] intersect(SparseVector other) {
+		int[][] positions = intersectPositions(other);
+		int[] thisIndices = this.indexArray();
+		int[] result = new int[positions[0].length];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = thisIndices[positions[0][i]];
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the element-wise (Hadamard) product of this vector and the other vector.
+	 * Only indices that are non-zero in both vectors can be non-zero in the product.
+	 *
+	 * @param other The vector to multiply with.
+	 * @return A new SparseVector holding the products.
+	 */
+	public SparseVector hadamard(SparseVector other) {
+		int[][] positions = intersectPositions(other);
+		int[] indices = this.indexArray();
+		double[] thisValues = this.valueArray();
+		double[] otherValues = other.valueArray();
+		int count = positions[0].length;
+		int[] resultIndices = new int[count];
+		double[] resultValues = new double[count];
+		for (int i = 0; i < count; i++) {
+			resultIndices[i] = indices[positions[0][i]];
+			resultValues[i] = thisValues[positions[0][i]] * otherValues[positions[1][i]];
+		}
+		return fromSortedArrays(length, resultIndices, resultValues, count);
+	}
+
+	/**
+	 * Returns a copy of this vector that keeps only the elements whose index is
+	 * non-zero in the mask.
+	 *
+	 * @param mask The vector whose non-zero indices select the elements to keep.
+	 * @return A new SparseVector holding the selected elements.
+	 */
+	public SparseVector maskBy(SparseVector mask) {
+		int[][] positions = intersectPositions(mask);
+		int[] indices = this.indexArray();
+		double[] values = this.valueArray();
+		int count = positions[0].length;
+		int[] resultIndices = new int[count];
+		double[] resultValues = new double[count];
+		for (int i = 0; i < count; i++) {
+			resultIndices[i] = indices[positions[0][i]];
+			resultValues[i] = values[positions[0][i]];
+		}
+		return fromSortedArrays(length, resultIndices, resultValues, count);
+	}
+
+	/**
+	 * Finds the positions of the common indices in the index arrays of both vectors.
+	 * For vectors of similar size a linear merge is used. If one vector has at least
+	 * GALLOP_RATIO times more elements, every index of the smaller vector is searched in
+	 * the larger one by galloping, which takes O(m log(n/m)) for m and n elements.
+	 *
+	 * @param other The vector to intersect with.
+	 * @return Two arrays of equal length: the positions in this vector and in the other one.
+	 */
+	private int[][] intersectPositions(SparseVector other) {
+		if (this.length != other.length) {
+			throw new IllegalArgumentException("Error: Vector lengths are not the same");
+		}
+		int[] thisIndices = this.indexArray();
+		int[] otherIndices = other.indexArray();
+		int maxCount = Math.min(thisIndices.length, otherIndices.length);
+		int[] thisPositions = new int[maxCount];
+		int[] otherPositions = new int[maxCount];
+		int count;
+
+		// Always gallop with the smaller vector through the larger one
+		if (thisIndices.length <= otherIndices.length) {
+			count = otherIndices.length / GALLOP_RATIO >= Math.max(1, thisIndices.length)
+					? gallopIntersect(thisIndices, otherIndices, thisPositions, otherPositions)
+					: mergeIntersect(thisIndices, otherIndices, thisPositions, otherPositions);
+		} else {
+			count = thisIndices.length / GALLOP_RATIO >= otherIndices.length
+					? gallopIntersect(otherIndices, thisIndices, otherPositions, thisPositions)
+					: mergeIntersect(otherIndices, thisIndices, otherPositions, thisPositions);
+		}
+		return new int[][] { Arrays.copyOf(thisPositions, count), Arrays.copyOf(otherPositions, count) };
+	}
+
+	/**
+	 * Intersects two ascending index arrays with a linear merge in O(m + n).
+	 *
+	 * @param a          The first index array.
+	 * @param b          The second index array.
+	 * @param aPositions Receives the positions of the common indices in a.
+	 * @param bPositions Receives the positions of the common indices in b.
+	 * @return The number of common indices.
+	 */
+	static int mergeIntersect(int[] a, int[] b, int[] aPositions, int[] bPositions) {
+		int i = 0;
+		int j = 0;
+		int count = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j]) {
+				i++;
+			} else if (a[i] > b[j]) {
+				j++;
+			} else {
+				aPositions[count] = i++;
+				bPositions[count] = j++;
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Intersects a small ascending index array with a large one. For every index of the
+	 * small array, the large array is probed at exponentially growing distances from the
+	 * last match until the index is passed, and the final range is binary searched.
+	 *
+	 * @param small          The smaller index array.
+	 * @param large          The larger index array.
+	 * @param smallPositions Receives the positions of the common indices in small.
+	 * @param largePositions Receives the positions of the common indices in large.
+	 * @return The number of common indices.
+	 */
+	static int gallopIntersect(int[] small, int[] large, int[] smallPositions, int[] largePositions) {
+		int low = 0;
+		int count = 0;
+		for (int i = 0; i < small.length && low < large.length; i++) {
+			int key = small[i];
+			// Gallop: find a bound with large[low + bound] >= key
+			int bound = 1;
+			while (low + bound < large.length && large[low + bound] < key) {
+				bound <<= 1;
+			}
+			int from = low + (bound >> 1);
+			int to = Math.min(low + bound + 1, large.length);
+			int found = Arrays.binarySearch(large, from, to, key);
+			if (found >= 0) {
+				smallPositions[count] = i;
+				largePositions[count] = found;
+				count++;
+				low = found + 1;
+			} else {
+				// The insertion point is the first element larger than the key
+				low = -found - 1;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the indices of the elements in ascending order as a primitive array.
+	 * The array is cached until the next modification of the vector and must not be
+	 * modified by the caller.
+	 *
+	 * @return The indices of the non-zero elements.
+	 */
+	int[] indexArray() {
+		return arrays().indices;
+	}
+
+	/**
+	 * Returns the values of the elements, in the order of indexArray(), as a primitive
+	 * array. The array is cached until the next modification of the vector and must not
+	 * be modified by the caller.
+	 *
+	 * @return The values of the non-zero elements.
+	 */
+	double[] valueArray() {
+		return arrays().values;
+	}
+
+	// Returns the cached arrays, rebuilding them if the vector was modified since
+	private ArrayView arrays() {
+		ArrayView view = cachedArrays;
+		if (view != null && view.modCount == modCount) {
+			return view;
+		}
+		int[] indices = new int[nonZeros];
+		double[] values = new double[nonZeros];
+		int i = 0;
+		for (Node current = head; current != null; current = current.next) {
+			indices[i] = current.index;
+			values[i] = current.value;
+			i++;
+		}
+		view = new ArrayView(modCount, indices, values);
+		cachedArrays = view;
+		return view;
+	}
+
+	/**
+	 * Builds a sparse vector from elements given in ascending index order. Zero values
+	 * are skipped. Runs in O(count) by appending every element at the tail of the list.
+	 *
+	 * @param length  The length of the new vector.
+	 * @param indices The indices of the elements, strictly ascending.
+	 * @param values  The values of the elements.
+	 * @param count   The number of elements to take from the arrays.
+	 * @return The new SparseVector.
+	 */
+	static SparseVector fromSortedArrays(int length, int[] indices, double[] values, int count) {
+		SparseVector result = new SparseVector(length);
+		Node tail = null;
+		for (int i = 0; i < count; i++) {
+			if (values[i] == 0.0) {
+				continue;
+			}
+			if (indices[i] < 0 || indices[i] >= length) {
+				throw new RuntimeException("\nError : Out of Bounds\n");
+			}
+			Node newNode = new Node(indices[i], values[i]);
+			if (tail == null) {
+				result.head = newNode;
+			} else {
+				tail.next = newNode;
+			}
+			tail = newNode;
+			result.nonZeros++;
+			result.fingerprint += elementHash(indices[i], values[i]);
+		}
+		result.modCount++;
+		return result;
+	}
 	
 	
 	@Override
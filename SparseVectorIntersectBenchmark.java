@@ -0,0 +1,72 @@
+import java.util.Random;
+
+/**
+ * Compares the linear merge and the galloping intersection of SparseVector for skewed inputs.
+ * A large vector with a fixed number of non-zero elements is intersected with smaller vectors
+ * whose size ratio is swept from 1:1 to 1:10^5. The index arrays are cached by SparseVector
+ * after the first call, so the timings only contain the intersection itself.
+ *
+ * <p>Usage: java SparseVectorIntersectBenchmark [largeNonZeros]
+ */
+public class SparseVectorIntersectBenchmark {
+
+	public static void main(String[] args) {
+		int largeCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		int length = largeCount * 4;
+		Random random = new Random(42);
+		SparseVector large = randomVector(length, largeCount, random);
+		int[] largeIndices = large.indexArray();
+
+		System.out.printf("large vector: %d non-zeros, length %d%n", largeCount, length);
+		System.out.printf("%-10s %10s %14s %14s %10s%n", "ratio", "small nnz", "merge us", "gallop us", "speedup");
+		for (int ratio = 1; ratio <= 100_000; ratio *= 10) {
+			int smallCount = Math.max(1, largeCount / ratio);
+			int[] smallIndices = randomVector(length, smallCount, random).indexArray();
+			int[] smallPositions = new int[smallCount];
+			int[] largePositions = new int[smallCount];
+
+			int repetitions = Math.max(5, 10_000_000 / (largeCount + smallCount));
+			long mergeNanos = Long.MAX_VALUE;
+			long gallopNanos = Long.MAX_VALUE;
+			int mergeCount = 0;
+			int gallopCount = 0;
+			// Take the best of several runs to reduce the influence of JIT and GC
+			for (int run = 0; run < repetitions; run++) {
+				long start = System.nanoTime();
+				mergeCount = SparseVector.mergeIntersect(smallIndices, largeIndices, smallPositions, largePositions);
+				mergeNanos = Math.min(mergeNanos, System.nanoTime() - start);
+				start = System.nanoTime();
+				gallopCount = SparseVector.gallopIntersect(smallIndices, largeIndices, smallPositions, largePositions);
+				gallopNanos = Math.min(gallopNanos, System.nanoTime() - start);
+			}
+			if (mergeCount != gallopCount) {
+				throw new IllegalStateException("Strategies disagree: " + mergeCount + " != " + gallopCount);
+			}
+			System.out.printf("1:%-8d %10d %14.1f %14.1f %9.1fx%n", ratio, smallCount,
+					mergeNanos / 1000.0, gallopNanos / 1000.0, (double) mergeNanos / gallopNanos);
+		}
+	}
+
+	// Creates a vector with count distinct random indices in [0, length)
+	private static SparseVector randomVector(int length, int count, Random random) {
+		boolean[] used = new boolean[length];
+		for (int placed = 0; placed < count;) {
+			int index = random.nextInt(length);
+			if (!used[index]) {
+				used[index] = true;
+				placed++;
+			}
+		}
+		int[] indices = new int[count];
+		double[] values = new double[count];
+		int i = 0;
+		for (int index = 0; index < length; index++) {
+			if (used[index]) {
+				indices[i] = index;
+				values[i] = 1.0 + random.nextDouble();
+				i++;
+			}
+		}
+		return SparseVector.fromSortedArrays(length, indices, values, count);
+	}
+}
@@ -0,0 +1,98 @@
+import java.util.Arrays;
+
+/**
+ * Compact signatures of sparse vectors for near-duplicate detection.
+ *
+ * SimHash maps a vector to 64 bits such that the fraction of differing bits of two
+ * signatures estimates the angle between the vectors divided by pi. MinHash maps the set of
+ * non-zero indices to k minimum hash values such that the fraction of equal positions of two
+ * signatures estimates the Jaccard similarity of the index sets.
+ */
+public class SparseVectorSignatures {
+
+	private SparseVectorSignatures() {
+	}
+
+	/**
+	 * Computes the 64-bit SimHash of a vector. Every element votes on every bit with its
+	 * value as weight, in the direction given by the bit of the hash of its index.
+	 *
+	 * @param vector The vector to sign.
+	 * @return The SimHash signature.
+	 */
+	public static long simHash(SparseVector vector) {
+		int[] indices = vector.indexArray();
+		double[] values = vector.valueArray();
+		double[] weights = new double[64];
+		for (int i = 0; i < indices.length; i++) {
+			long h = mix(indices[i]);
+			for (int bit = 0; bit < 64; bit++) {
+				weights[bit] += ((h >>> bit) & 1) != 0 ? values[i] : -values[i];
+			}
+		}
+		long signature = 0;
+		for (int bit = 0; bit < 64; bit++) {
+			if (weights[bit] > 0) {
+				signature |= 1L << bit;
+			}
+		}
+		return signature;
+	}
+
+	/**
+	 * Computes the MinHash signature of the non-zero indices of a vector. Position j holds
+	 * the minimum of the j-th hash function over all indices.
+	 *
+	 * @param vector        The vector to sign.
+	 * @param hashFunctions The number k of hash functions, i.e. the length of the signature.
+	 * @return The MinHash signature.
+	 */
+	public static long[] minHash(SparseVector vector, int hashFunctions) {
+		long[] signature = new long[hashFunctions];
+		Arrays.fill(signature, Long.MAX_VALUE);
+		for (int index : vector.indexArray()) {
+			long h = mix(index);
+			for (int j = 0; j < hashFunctions; j++) {
+				// Derive the j-th hash function by remixing with a per-function seed
+				long hj = mix(h + j * 0x9E3779B97F4A7C15L);
+				if (hj < signature[j]) {
+					signature[j] = hj;
+				}
+			}
+		}
+		return signature;
+	}
+
+	/**
+	 * Estimates the Jaccard similarity of the index sets of two vectors from their
+	 * MinHash signatures.
+	 *
+	 * @param a The signature of the first vector.
+	 * @param b The signature of the second vector, of the same length.
+	 * @return The fraction of equal positions.
+	 */
+	public static double estimateJaccard(long[] a, long[] b) {
+		if (a.length != b.length) {
+			throw new IllegalArgumentException("Signature lengths are not the same");
+		}
+		int equal = 0;
+		for (int j = 0; j < a.length; j++) {
+			if (a[j] == b[j]) {
+				equal++;
+			}
+		}
+		return a.length == 0 ? 0.0 : (double) equal / a.length;
+	}
+
+	// Returns the number of differing bits of two SimHash signatures
+	public static int hammingDistance(long a, long b) {
+		return Long.bitCount(a ^ b);
+	}
+
+	// Finalizer of SplitMix64
+	private static long mix(long h) {
+		h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+		return h ^ (h >>> 31);
+	}
+}
@@ -0,0 +1,122 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deduplicating store of sparse vectors. intern() collapses equal vectors to one shared
+ * instance using SparseVector.equals and hashCode, whose fingerprint makes a lookup O(1)
+ * for all but the final comparison with the candidate.
+ *
+ * The store also indexes the SimHash signature of every interned vector in BANDS tables,
+ * each keyed by one 16-bit band of the signature. Two signatures within a Hamming distance
+ * of BANDS - 1 agree on at least one band, so findNearDuplicates() only compares against
+ * the vectors sharing a band instead of all stored vectors.
+ *
+ * Interned vectors are shared and made read-only, since a modification would change their
+ * hash and corrupt the tables.
+ */
+public class SparseVectorStore {
+	private static final int BANDS = 4;
+	private static final int BAND_BITS = 64 / BANDS;
+
+	private final Map<SparseVector, SparseVector> canonical = new HashMap<>();
+	private final List<Map<Integer, List<Entry>>> bandTables = new ArrayList<>(BANDS);
+
+	// A stored vector together with its SimHash signature
+	private static final class Entry {
+		private final SparseVector vector;
+		private final long signature;
+
+		Entry(SparseVector vector, long signature) {
+			this.vector = vector;
+			this.signature = signature;
+		}
+	}
+
+	public SparseVectorStore() {
+		for (int band = 0; band < BANDS; band++) {
+			bandTables.add(new HashMap<>());
+		}
+	}
+
+	/**
+	 * Returns the shared instance equal to the given vector. If no equal vector is stored
+	 * yet, the given vector itself becomes the shared instance and is made read-only.
+	 *
+	 * @param vector The vector to intern.
+	 * @return The shared instance equal to the vector.
+	 */
+	public synchronized SparseVector intern(SparseVector vector) {
+		SparseVector existing = canonical.get(vector);
+		if (existing != null) {
+			return existing;
+		}
+		vector.markReadOnly();
+		canonical.put(vector, vector);
+		long signature = SparseVectorSignatures.simHash(vector);
+		Entry entry = new Entry(vector, signature);
+		for (int band = 0; band < BANDS; band++) {
+			bandTables.get(band).computeIfAbsent(bandOf(signature, band), key -> new ArrayList<>()).add(entry);
+		}
+		return vector;
+	}
+
+	/**
+	 * Checks whether a vector equal to the given one is stored.
+	 *
+	 * @param vector The vector to look up.
+	 * @return true if an equal vector was interned.
+	 */
+	public synchronized boolean contains(SparseVector vector) {
+		return canonical.containsKey(vector);
+	}
+
+	/**
+	 * Returns the stored vectors whose SimHash signature differs from the signature of the
+	 * given vector in at most maxDistance bits.
+	 *
+	 * @param vector      The vector to find near-duplicates of.
+	 * @param maxDistance The maximum Hamming distance of the signatures, at most BANDS - 1.
+	 * @return The near-duplicates, including an equal vector if one is stored.
+	 */
+	public synchronized List<SparseVector> findNearDuplicates(SparseVector vector, int maxDistance) {
+		if (maxDistance < 0 || maxDistance >= BANDS) {
+			throw new IllegalArgumentException("Maximum distance must be between 0 and " + (BANDS - 1));
+		}
+		long signature = SparseVectorSignatures.simHash(vector);
+		List<SparseVector> result = new ArrayList<>();
+		for (int band = 0; band < BANDS; band++) {
+			List<Entry> candidates = bandTables.get(band).get(bandOf(signature, band));
+			if (candidates == null) {
+				continue;
+			}
+			for (Entry candidate : candidates) {
+				if (SparseVectorSignatures.hammingDistance(signature, candidate.signature) <= maxDistance
+						&& firstSharedBand(signature, candidate.signature) == band) {
+					// Only the first shared band reports a candidate, so it is listed once
+					result.add(candidate.vector);
+				}
+			}
+		}
+		return result;
+	}
+
+	// Returns the number of distinct vectors stored
+	public synchronized int size() {
+		return canonical.size();
+	}
+
+	private static int bandOf(long signature, int band) {
+		return (int) ((signature >>> (band * BAND_BITS)) & ((1L << BAND_BITS) - 1));
+	}
+
+	private static int firstSharedBand(long a, long b) {
+		for (int band = 0; band < BANDS; band++) {
+			if (bandOf(a, band) == bandOf(b, band)) {
+				return band;
+			}
+		}
+		return -1;
+	}
+}
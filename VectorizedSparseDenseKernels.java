@@ -0,0 +1,70 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD implementation of the SparseDenseKernels using the gather and scatter operations of
+ * the Java Vector API. The index array of the sparse vector serves directly as index map, so
+ * each step loads SPECIES.length() dense values at arbitrary positions in one operation.
+ * Elements that do not fill a whole vector are handled by a scalar tail loop.
+ *
+ * Requires the jdk.incubator.vector module at compile time and at run time
+ * (--add-modules jdk.incubator.vector). Only SparseDenseKernels calls this class, through
+ * method handles looked up after it has checked that the module is present, so no other
+ * class depends on it at compile time.
+ */
+class VectorizedSparseDenseKernels {
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	private VectorizedSparseDenseKernels() {
+	}
+
+	// Vectors of a single lane would only add overhead to the scalar loop
+	static boolean isSupported() {
+		return SPECIES.length() >= 2;
+	}
+
+	// sum of values[i] * dense[indices[i]]
+	static double dot(int[] indices, double[] values, double[] dense) {
+		DoubleVector sum = DoubleVector.zero(SPECIES);
+		int upperBound = SPECIES.loopBound(indices.length);
+		int i = 0;
+		for (; i < upperBound; i += SPECIES.length()) {
+			DoubleVector gathered = DoubleVector.fromArray(SPECIES, dense, 0, indices, i);
+			DoubleVector v = DoubleVector.fromArray(SPECIES, values, i);
+			sum = v.fma(gathered, sum);
+		}
+		double result = sum.reduceLanes(VectorOperators.ADD);
+		for (; i < indices.length; i++) {
+			result += values[i] * dense[indices[i]];
+		}
+		return result;
+	}
+
+	// dense[indices[i]] += alpha * values[i]; the indices are unique, so the
+	// scattered lanes never collide
+	static void axpy(double alpha, int[] indices, double[] values, double[] dense) {
+		int upperBound = SPECIES.loopBound(indices.length);
+		int i = 0;
+		for (; i < upperBound; i += SPECIES.length()) {
+			DoubleVector gathered = DoubleVector.fromArray(SPECIES, dense, 0, indices, i);
+			DoubleVector v = DoubleVector.fromArray(SPECIES, values, i);
+			v.mul(alpha).add(gathered).intoArray(dense, 0, indices, i);
+		}
+		for (; i < indices.length; i++) {
+			dense[indices[i]] += alpha * values[i];
+		}
+	}
+
+	// values[i] = dense[indices[i]]
+	static void gather(double[] dense, int[] indices, double[] values) {
+		int upperBound = SPECIES.loopBound(indices.length);
+		int i = 0;
+		for (; i < upperBound; i += SPECIES.length()) {
+			DoubleVector.fromArray(SPECIES, dense, 0, indices, i).intoArray(values, i);
+		}
+		for (; i < indices.length; i++) {
+			values[i] = dense[indices[i]];
+		}
+	}
+}